@@ -0,0 +1,85 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.CigarrostockApplication;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application against its own in-memory H2 database, or the given JDBC URL, without a web server unless
+ * one is asked for, and bulk loads the catalogue.
+ */
+final class CigarroBenchmarkContext {
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final CigarroType[] TYPES = CigarroType.values();
+
+    private CigarroBenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return start(WebApplicationType.NONE, databaseName, properties);
+    }
+
+    /**
+     * Same as {@link #start(String, String...)} with Tomcat listening on a random port, read back with {@link #port}.
+     */
+    static ConfigurableApplicationContext startServer(String databaseName, String... properties) {
+        return start(WebApplicationType.SERVLET, databaseName, properties);
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /**
+     * Boots against the given JDBC URL instead of a named in-memory database.
+     */
+    static ConfigurableApplicationContext startWithUrl(String url, String... properties) {
+        return boot(WebApplicationType.NONE, url, properties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String databaseName, String... properties) {
+        return boot(webApplicationType, "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE", properties);
+    }
+
+    private static ConfigurableApplicationContext boot(WebApplicationType webApplicationType, String url, String... properties) {
+        // passed as command line arguments so they win over application.properties and the profile ones
+        Stream<String> defaults = Stream.of("spring.datasource.url=" + url,
+                "spring.cache.type=none",
+                "spring.main.banner-mode=off",
+                "server.port=0",
+                "logging.level.root=WARN");
+        String[] args = Stream.concat(defaults, Arrays.stream(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(CigarrostockApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    static void populate(ConfigurableApplicationContext context, int rows, int max, int quantity) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 1; i <= rows; i++) {
+            batch.add(new Object[]{(long) i, nameOf(i), "Brand " + (i % 100), max, quantity, TYPES[i % TYPES.length].name(), 0L});
+            if (batch.size() == INSERT_BATCH_SIZE || i == rows) {
+                jdbcTemplate.batchUpdate("insert into cigarro (id, name, brand, max, quantity, type, version) values (?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    static String nameOf(int id) {
+        return "Cigarro " + id;
+    }
+}
@@ -0,0 +1,106 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP load against a running server with more concurrent clients than Tomcat worker threads, comparing the default
+ * platform thread pool with virtual threads. Throughput gives requests/sec and sample time gives the p99 latency.
+ * <p>
+ * {@link #findByName} is a single indexed read; {@link #incrementThenDecrement} holds a row lock and a connection
+ * for two update transactions, which is where requests block on the database. Each client decrements the cigarro
+ * it has just incremented, so with 400 clients the stock stays between its initial 100 units and the max of 500
+ * however they interleave. Rate limiting and load shedding are off, all the clients sharing one address.
+ * <p>
+ * Virtual threads need the benchmark to run on JDK 21; on older JDKs both modes use the platform pool:
+ * {@code JAVA_HOME=<jdk 21> mvn -Pbenchmark test-compile exec:exec -Djmh.args="CigarroHttpBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(400)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CigarroHttpBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final String ONE_UNIT = "{\"quantity\":1}";
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = CigarroBenchmarkContext.startServer("http-" + threads,
+                "cigarro.virtual-threads.enabled=" + "virtual".equals(threads),
+                "cigarro.rate-limit.enabled=false",
+                "cigarro.concurrency.enabled=false");
+        CigarroBenchmarkContext.populate(context, ROWS, 500, 100);
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        baseUrl = "http://localhost:" + CigarroBenchmarkContext.port(context) + "/api/cigarros/";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int findByName() throws IOException, InterruptedException {
+        int id = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "Cigarro%20" + id)).GET().build();
+        return send(request, id);
+    }
+
+    @Benchmark
+    public int incrementThenDecrement() throws IOException, InterruptedException {
+        int id = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+        send(patch(id, "increment"), id);
+        return send(patch(id, "decrement"), id);
+    }
+
+    private HttpRequest patch(int id, String operation) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + id + "/" + operation))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(ONE_UNIT))
+                .build();
+    }
+
+    private int send(HttpRequest request, int id) throws IOException, InterruptedException {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Unexpected status " + status + " for cigarro " + id);
+        }
+        return status;
+    }
+}
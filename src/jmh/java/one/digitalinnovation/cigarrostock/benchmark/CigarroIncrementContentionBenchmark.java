@@ -0,0 +1,62 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.service.CigarroService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads incrementing either a single hot SKU or 64 SKUs, to track the cost of row contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CigarroIncrementContentionBenchmark {
+
+    @Param({"1", "64"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+
+    private CigarroService cigarroService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = CigarroBenchmarkContext.start("contention-" + skus);
+        CigarroBenchmarkContext.populate(context, skus, Integer.MAX_VALUE, 0);
+        cigarroService = context.getBean(CigarroService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CigarroDTO increment() throws CigarroNotFoundException, CigarroStockExceededException {
+        long id = 1 + ThreadLocalRandom.current().nextInt(skus);
+        return cigarroService.increment(id, 1);
+    }
+}
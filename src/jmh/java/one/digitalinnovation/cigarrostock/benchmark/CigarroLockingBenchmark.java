@@ -0,0 +1,102 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.service.CigarroService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads applying read-modify-write movements either through the optimistic {@code @Version} path with retries,
+ * or holding a {@code SELECT ... FOR UPDATE} row lock for the whole transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CigarroLockingBenchmark {
+
+    @Param({"1", "64"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+
+    private CigarroService cigarroService;
+
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+        public long exhaustedRetries;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // every lost version check is logged by Hibernate before the retry kicks in
+        context = CigarroBenchmarkContext.start("locking-" + skus,
+                "logging.level.org.hibernate.engine.jdbc.batch.internal.BatchingBatch=OFF");
+        CigarroBenchmarkContext.populate(context, skus, Integer.MAX_VALUE, 0);
+        cigarroService = context.getBean(CigarroService.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MovementResultDTO> optimistic(Conflicts conflicts) {
+        long id = 1 + ThreadLocalRandom.current().nextInt(skus);
+        try {
+            return cigarroService.applyMovements(Collections.singletonList(new MovementDTO(id, 1)));
+        } catch (CigarroConcurrentUpdateException e) {
+            conflicts.exhaustedRetries++;
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Integer pessimistic() {
+        long id = 1 + ThreadLocalRandom.current().nextInt(skus);
+        return transactionTemplate.execute(status -> {
+            Cigarro cigarro = entityManager.find(Cigarro.class, id, LockModeType.PESSIMISTIC_WRITE);
+            cigarro.setQuantity(cigarro.getQuantity() + 1);
+            return cigarro.getQuantity();
+        });
+    }
+}
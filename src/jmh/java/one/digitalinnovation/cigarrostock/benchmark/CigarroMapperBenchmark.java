@@ -0,0 +1,42 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.mapper.CigarroMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CigarroMapperBenchmark {
+
+    private final CigarroMapper cigarroMapper = CigarroMapper.INSTANCE;
+
+    private final Cigarro cigarro = new Cigarro(1L, "Marlboro Red", "Philip Morris", 500, 100, CigarroType.VIRGINIA, 20, 0L);
+
+    private final CigarroDTO cigarroDTO = cigarroMapper.toDTO(cigarro);
+
+    @Benchmark
+    public CigarroDTO toDTO() {
+        return cigarroMapper.toDTO(cigarro);
+    }
+
+    @Benchmark
+    public Cigarro toModel() {
+        return cigarroMapper.toModel(cigarroDTO);
+    }
+}
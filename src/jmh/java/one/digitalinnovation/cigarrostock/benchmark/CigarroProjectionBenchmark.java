@@ -0,0 +1,92 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.mapper.CigarroMapper;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Read paths loading managed entities and mapping them, against constructor expressions reading straight into
+ * the DTO, both in read-only transactions. Run with {@code -prof gc}: gc.alloc.rate.norm is the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CigarroProjectionBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private CigarroRepository cigarroRepository;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private final CigarroMapper cigarroMapper = CigarroMapper.INSTANCE;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = CigarroBenchmarkContext.start("projection-" + rows);
+        CigarroBenchmarkContext.populate(context, rows, 500, 100);
+        cigarroRepository = context.getBean(CigarroRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CigarroDTO findByNameEntity() {
+        String name = CigarroBenchmarkContext.nameOf(1 + ThreadLocalRandom.current().nextInt(rows));
+        return readOnlyTransaction.execute(status -> cigarroMapper.toDTO(cigarroRepository.findByName(name).orElseThrow()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CigarroDTO findByNameProjection() {
+        String name = CigarroBenchmarkContext.nameOf(1 + ThreadLocalRandom.current().nextInt(rows));
+        return readOnlyTransaction.execute(status -> cigarroRepository.findDTOByName(name).orElseThrow());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<CigarroDTO> listAllEntity() {
+        return readOnlyTransaction.execute(status -> cigarroRepository.findAll()
+                .stream()
+                .map(cigarroMapper::toDTO)
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<CigarroDTO> listAllProjection() {
+        return readOnlyTransaction.execute(status -> cigarroRepository.findAllDTOs());
+    }
+}
@@ -0,0 +1,63 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.service.CigarroSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-10 autocomplete lookups on the in-memory search index, with prefixes as typed after two to four keystrokes
+ * of a cigarro number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CigarroSearchBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private CigarroSearchIndex cigarroSearchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = CigarroBenchmarkContext.start("search-" + rows);
+        CigarroBenchmarkContext.populate(context, rows, 500, 100);
+        cigarroSearchIndex = context.getBean(CigarroSearchIndex.class);
+        // the index was loaded when the context became ready, before the rows were inserted behind its back
+        cigarroSearchIndex.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CigarroSearchResultDTO> search() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String number = String.valueOf(1 + random.nextInt(rows));
+        return cigarroSearchIndex.search(number.substring(0, Math.min(number.length(), 2 + random.nextInt(3))), 10);
+    }
+}
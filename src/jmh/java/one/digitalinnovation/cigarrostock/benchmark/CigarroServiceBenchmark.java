@@ -0,0 +1,66 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.service.CigarroService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service read paths against H2 with the cache disabled, so every call reaches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CigarroServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private CigarroService cigarroService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = CigarroBenchmarkContext.start("service-" + rows);
+        CigarroBenchmarkContext.populate(context, rows, 500, 100);
+        cigarroService = context.getBean(CigarroService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CigarroDTO findByName() throws CigarroNotFoundException {
+        int id = 1 + ThreadLocalRandom.current().nextInt(rows);
+        return cigarroService.findByName(CigarroBenchmarkContext.nameOf(id));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<CigarroDTO> listAll() {
+        return cigarroService.listAll();
+    }
+}
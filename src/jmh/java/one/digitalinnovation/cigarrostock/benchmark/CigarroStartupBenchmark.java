@@ -0,0 +1,65 @@
+package one.digitalinnovation.cigarrostock.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the persistent profile on a catalogue already on disk: one application start per fresh JVM, up to
+ * the application being ready, which includes the Flyway validation and loading the search index.
+ * The database file is populated by the first fork and kept under target/ for the next runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 5, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class CigarroStartupBenchmark {
+
+    private static final String PERSISTENT_PROFILE = "spring.profiles.active=persistent";
+
+    @Param({"1000000"})
+    private int rows;
+
+    private String url;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        File database = new File("target/benchmark/startup-" + rows);
+        url = "jdbc:h2:file:" + database.getAbsolutePath()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;QUERY_CACHE_SIZE=64;DB_CLOSE_ON_EXIT=FALSE";
+        if (!new File(database.getPath() + ".mv.db").exists()) {
+            try (ConfigurableApplicationContext populating = CigarroBenchmarkContext.startWithUrl(url, PERSISTENT_PROFILE)) {
+                CigarroBenchmarkContext.populate(populating, rows, 500, 100);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = CigarroBenchmarkContext.startWithUrl(url, PERSISTENT_PROFILE);
+        return context;
+    }
+}
@@ -0,0 +1,50 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+/**
+ * Caching runs outside the transaction interceptor, so entries are only written once the change is committed.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    public static final String CIGARROS_CACHE = "cigarros";
+
+    private static final String COLLAPSED_METRIC = "cigarro.cache.collapsed";
+
+    /**
+     * The Caffeine cache manager Spring Boot would configure from the spring.cache properties, with caches that count
+     * in cigarro.cache.collapsed the lookups that waited for a load already running instead of running their own.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.cache.type", havingValue = "caffeine", matchIfMissing = true)
+    public CaffeineCacheManager cacheManager(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache createCaffeineCache(String name) {
+                return new CollapsedLoadCountingCache(name, createNativeCaffeineCache(name), isAllowNullValues(),
+                        meterRegistry.counter(COLLAPSED_METRIC, "cache", name));
+            }
+        };
+        String specification = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(specification)) {
+            cacheManager.setCacheSpecification(specification);
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        }
+        return cacheManager;
+    }
+}
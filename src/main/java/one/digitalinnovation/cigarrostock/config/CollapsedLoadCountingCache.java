@@ -0,0 +1,39 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import io.micrometer.core.instrument.Counter;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caffeine cache that counts the lookups collapsed into a load already running for the same key. With
+ * {@code @Cacheable(sync = true)} such lookups wait for the value being loaded instead of querying it again.
+ */
+class CollapsedLoadCountingCache extends CaffeineCache {
+
+    private final Set<Object> loadingKeys = ConcurrentHashMap.newKeySet();
+    private final Counter collapsedLoads;
+
+    CollapsedLoadCountingCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                               boolean allowNullValues, Counter collapsedLoads) {
+        super(name, cache, allowNullValues);
+        this.collapsedLoads = collapsedLoads;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (loadingKeys.contains(key)) {
+            collapsedLoads.increment();
+        }
+        return super.get(key, () -> {
+            loadingKeys.add(key);
+            try {
+                return valueLoader.call();
+            } finally {
+                loadingKeys.remove(key);
+            }
+        });
+    }
+}
@@ -0,0 +1,47 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Counts the business exceptions answered by the REST controllers, tagged by exception class. They are counted where
+ * they leave the controller rather than in the services, which call each other and would count the same exception
+ * once for every service it passes through.
+ */
+@Aspect
+@Component
+public class ExceptionMetricsAspect {
+
+    private static final String EXCEPTIONS_METRIC = "cigarro.exceptions";
+    private static final Package EXCEPTION_PACKAGE = CigarroNotFoundException.class.getPackage();
+
+    private final MeterRegistry meterRegistry;
+
+    public ExceptionMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Stream.of(CigarroAlreadyRegisteredException.class, CigarroNotFoundException.class, CigarroStockExceededException.class)
+                .forEach(this::counter);
+    }
+
+    @AfterThrowing(pointcut = "@within(org.springframework.web.bind.annotation.RestController)", throwing = "exception")
+    public void countException(Exception exception) {
+        if (exception.getClass().getPackage() == EXCEPTION_PACKAGE) {
+            counter(exception.getClass()).increment();
+        }
+    }
+
+    private Counter counter(Class<? extends Exception> exceptionClass) {
+        return Counter.builder(EXCEPTIONS_METRIC)
+                .description("Business exceptions answered by the cigarro API")
+                .tag("exception", exceptionClass.getSimpleName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,49 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Configuration
+public class MetricsConfig {
+
+    private static final String STOCK_UNITS_KEY = "stockUnits";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Units in stock per type, read with a single grouped query shared by every type's gauge and kept for the
+     * refresh interval, so scrapes do not query the catalogue once per type each time.
+     */
+    @Bean
+    public MeterBinder stockUnitsByType(CigarroRepository cigarroRepository,
+                                        @Value("${cigarro.metrics.stock-units-refresh-ms:15000}") long refreshMillis) {
+        LoadingCache<String, Map<String, Long>> stockUnits = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(refreshMillis))
+                .build(key -> cigarroRepository.summarizeByType()
+                        .stream()
+                        .collect(Collectors.toMap(StockSummaryDTO::getGroup, StockSummaryDTO::getQuantity)));
+        return meterRegistry -> Arrays.stream(CigarroType.values())
+                .forEach(type -> Gauge.builder("cigarro.stock.units", stockUnits, units -> units.get(STOCK_UNITS_KEY).getOrDefault(type.name(), 0L))
+                        .description("Total units in stock per cigarro type")
+                        .tag("type", type.name())
+                        .register(meterRegistry));
+    }
+}
@@ -0,0 +1,43 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in execution of Tomcat requests on virtual threads, so a request blocked on JPA parks a cheap virtual
+ * thread instead of holding one of the 200 platform threads of the default pool. The connection pool then
+ * becomes the only bound on concurrent database work.
+ * <p>
+ * Virtual threads need a JDK 21 runtime while the application still targets Java 11, so the executor is looked
+ * up reflectively and Tomcat keeps its own pool when the JDK does not provide it.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "cigarro.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> virtualThreadPerTaskExecutor().ifPresent(protocolHandler::setExecutor);
+    }
+
+    static Optional<ExecutorService> virtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on Java {}, requests keep running on the Tomcat thread pool",
+                    System.getProperty("java.version"));
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * SSE subscriber whose events are queued in a bounded buffer and written by a sender pool, so the thread
+ * publishing them never blocks on a socket. At most one sender drains a subscriber at a time, keeping its
+ * events in order. When the buffer is full, {@link #offer} fails and the owner is expected to {@link #close}
+ * the subscriber rather than wait for it.
+ */
+final class BufferedSseSubscriber {
+
+    private final SseEmitter emitter;
+    private final BlockingQueue<SseEventBuilder> buffer;
+    private final Executor senders;
+    private final Consumer<BufferedSseSubscriber> onSendFailure;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private volatile boolean closed;
+
+    BufferedSseSubscriber(SseEmitter emitter, int bufferSize, Executor senders, Consumer<BufferedSseSubscriber> onSendFailure) {
+        this.emitter = emitter;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.senders = senders;
+        this.onSendFailure = onSendFailure;
+    }
+
+    boolean offer(SseEventBuilder event) {
+        return buffer.offer(event);
+    }
+
+    void scheduleSend() {
+        if (!closed && !buffer.isEmpty() && sending.compareAndSet(false, true)) {
+            senders.execute(this::send);
+        }
+    }
+
+    private void send() {
+        try {
+            SseEventBuilder event;
+            while (!closed && (event = buffer.poll()) != null) {
+                emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            closed = true;
+            onSendFailure.accept(this);
+        } finally {
+            sending.set(false);
+        }
+        scheduleSend();
+    }
+
+    void close() {
+        closed = true;
+        buffer.clear();
+        emitter.complete();
+    }
+}
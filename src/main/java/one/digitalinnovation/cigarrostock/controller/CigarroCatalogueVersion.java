@@ -0,0 +1,149 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Version of the whole catalogue, bumped once every committed cigarro change, which lets catalogue reads be
+ * answered with 304 Not Modified without querying anything. It also keeps the serialized listing of the latest
+ * version, rebuilt on the first read after a change.
+ * <p>
+ * HTTP dates only have whole seconds, so a Last-Modified date is only handed out once its second is over: a change
+ * made later in that same second would otherwise look unmodified to a client holding it.
+ */
+@Component
+public class CigarroCatalogueVersion {
+
+    private static final long SECOND_MILLIS = 1000;
+
+    private final Clock clock;
+    private final String epoch;
+    private final AtomicReference<Version> current;
+    private final Object listingLock = new Object();
+    private volatile Listing listing;
+
+    public CigarroCatalogueVersion() {
+        this(Clock.systemUTC());
+    }
+
+    CigarroCatalogueVersion(Clock clock) {
+        this.clock = clock;
+        this.epoch = Long.toString(clock.millis(), Character.MAX_RADIX);
+        this.current = new AtomicReference<>(new Version(0, clock.millis()));
+    }
+
+    public Version current() {
+        return current.get();
+    }
+
+    /**
+     * ETag of a version, unique across restarts since the counter itself starts over on each one.
+     */
+    public String eTag(Version version) {
+        return epoch + "-" + version.getNumber();
+    }
+
+    /**
+     * ETag of a single cigarro, under the same epoch: versions start over too when the database is recreated.
+     */
+    public String eTag(Long cigarroId, Long cigarroVersion) {
+        return epoch + "-" + cigarroId + "-" + cigarroVersion;
+    }
+
+    /**
+     * Reads the version back out of an ETag of the given cigarro, or returns null when the tag was not built by
+     * {@link #eTag(Long, Long)} for that cigarro since this start.
+     */
+    public Long cigarroVersion(String eTag, Long cigarroId) {
+        String prefix = epoch + "-" + cigarroId + "-";
+        if (!eTag.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(eTag.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the Last-Modified date of a version, or -1 while its second is not over yet.
+     */
+    public long lastModified(Version version) {
+        long lastModifiedSecond = truncateToSecond(version.getLastModified());
+        return truncateToSecond(clock.millis()) > lastModifiedSecond ? lastModifiedSecond : -1;
+    }
+
+    /**
+     * Tells whether an If-Modified-Since date, -1 when absent, proves the client already holds the given version.
+     * Dates within the current second are ignored, since a change may still follow in that second.
+     */
+    public boolean isNotModifiedSince(Version version, long ifModifiedSince) {
+        return ifModifiedSince >= truncateToSecond(version.getLastModified())
+                && ifModifiedSince < truncateToSecond(clock.millis());
+    }
+
+    /**
+     * Returns the listing serialized for the current version, serializing it again only if the catalogue changed.
+     */
+    public Listing listing(ListingSerializer serializer) throws IOException {
+        Listing cachedListing = listing;
+        if (cachedListing != null && cachedListing.getVersion() == current.get()) {
+            return cachedListing;
+        }
+        synchronized (listingLock) {
+            // read the version before the catalogue, so a change committed meanwhile is never hidden behind it
+            Version version = current.get();
+            if (listing == null || listing.getVersion() != version) {
+                listing = new Listing(version, serializer.serialize());
+            }
+            return listing;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(CigarroStockChangedEvent event) {
+        bump();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CigarroDeletedEvent event) {
+        bump();
+    }
+
+    private void bump() {
+        long now = clock.millis();
+        current.updateAndGet(version -> new Version(version.getNumber() + 1, Math.max(now, version.getLastModified())));
+    }
+
+    private static long truncateToSecond(long millis) {
+        return millis / SECOND_MILLIS * SECOND_MILLIS;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Version {
+        private final long number;
+        private final long lastModified;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Listing {
+        private final Version version;
+        private final byte[] body;
+    }
+
+    @FunctionalInterface
+    public interface ListingSerializer {
+        byte[] serialize() throws IOException;
+    }
+}
@@ -0,0 +1,155 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.cigarrostock.dto.CigarroChangeDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroChangeType;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Change feed of committed cigarro changes, numbered with a gapless sequence. The latest changes are kept
+ * in a ring buffer so a client reconnecting with the last sequence it saw only receives what it missed.
+ * <p>
+ * Committing threads never write to a socket: each subscriber has a bounded buffer drained by a small
+ * sender pool, and a subscriber whose buffer is full is disconnected instead of buffering without bound.
+ * It can then resume from its last sequence, or reload the listing if it fell out of the ring buffer.
+ */
+@Component
+public class CigarroChangeFeed {
+
+    static final String CHANGE_EVENT_NAME = "change";
+    static final String RESET_EVENT_NAME = "reset";
+    private static final String DROPPED_METRIC = "cigarro.changes.dropped";
+
+    private final CigarroChangeDTO[] history;
+    private final int subscriberBufferSize;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final Counter droppedSubscribers;
+    private final Set<BufferedSseSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private long lastSequence;
+
+    @Autowired
+    public CigarroChangeFeed(MeterRegistry meterRegistry,
+                             @Value("${cigarro.changes.history-size:4096}") int historySize,
+                             @Value("${cigarro.changes.subscriber-buffer-size:256}") int subscriberBufferSize,
+                             @Value("${cigarro.changes.sender-threads:4}") int senderThreads,
+                             @Value("${cigarro.changes.sse-timeout-ms:1800000}") long timeoutMillis) {
+        this(meterRegistry, historySize, subscriberBufferSize, timeoutMillis,
+                Executors.newFixedThreadPool(senderThreads, senderThreadFactory()));
+    }
+
+    CigarroChangeFeed(MeterRegistry meterRegistry, int historySize, int subscriberBufferSize, long timeoutMillis, ExecutorService senders) {
+        this.history = new CigarroChangeDTO[historySize];
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.senders = senders;
+        this.droppedSubscribers = meterRegistry.counter(DROPPED_METRIC);
+    }
+
+    private static CustomizableThreadFactory senderThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cigarro-changes-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * Subscribes to the changes committed from now on, preceded by the ones after {@code since} when given.
+     * A {@code reset} event is sent first when those are no longer available.
+     */
+    public SseEmitter subscribe(Long since) {
+        return subscribe(since, new SseEmitter(timeoutMillis));
+    }
+
+    synchronized SseEmitter subscribe(Long since, SseEmitter emitter) {
+        BufferedSseSubscriber subscriber = new BufferedSseSubscriber(emitter, subscriberBufferSize, senders, subscribers::remove);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        if (since != null) {
+            enqueueMissedChanges(subscriber, since);
+        }
+        subscribers.add(subscriber);
+        subscriber.scheduleSend();
+        return emitter;
+    }
+
+    private void enqueueMissedChanges(BufferedSseSubscriber subscriber, long since) {
+        long oldestAvailable = Math.max(1, lastSequence - history.length + 1);
+        long missed = lastSequence - since;
+        if (since < oldestAvailable - 1 || missed < 0 || missed > subscriberBufferSize) {
+            subscriber.offer(SseEmitter.event().id(String.valueOf(lastSequence)).name(RESET_EVENT_NAME).data(lastSequence));
+            return;
+        }
+        for (long sequence = since + 1; sequence <= lastSequence; sequence++) {
+            subscriber.offer(toEvent(history[historyIndex(sequence)]));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(CigarroStockChangedEvent event) {
+        CigarroChangeType type = event.getMovementType() == StockMovementType.CREATION ? CigarroChangeType.CREATED : CigarroChangeType.UPDATED;
+        append(new CigarroChangeDTO(null, type, event.getCigarroId(), event.getName(), event.getQuantity(), Instant.now()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CigarroDeletedEvent event) {
+        append(new CigarroChangeDTO(null, CigarroChangeType.DELETED, event.getCigarroId(), event.getName(), null, Instant.now()));
+    }
+
+    synchronized void append(CigarroChangeDTO change) {
+        change.setSequence(++lastSequence);
+        history[historyIndex(lastSequence)] = change;
+        SseEventBuilder event = toEvent(change);
+        for (BufferedSseSubscriber subscriber : subscribers) {
+            if (subscriber.offer(event)) {
+                subscriber.scheduleSend();
+            } else {
+                drop(subscriber);
+            }
+        }
+    }
+
+    private int historyIndex(long sequence) {
+        return (int) (sequence % history.length);
+    }
+
+    private SseEventBuilder toEvent(CigarroChangeDTO change) {
+        return SseEmitter.event()
+                .id(String.valueOf(change.getSequence()))
+                .name(CHANGE_EVENT_NAME)
+                .data(change);
+    }
+
+    private void drop(BufferedSseSubscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            droppedSubscribers.increment();
+            subscriber.close();
+        }
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+}
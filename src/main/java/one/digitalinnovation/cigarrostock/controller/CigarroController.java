@@ -1,33 +1,92 @@
 package one.digitalinnovation.cigarrostock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.cigarrostock.controller.CigarroCatalogueVersion.Listing;
+import one.digitalinnovation.cigarrostock.controller.CigarroCatalogueVersion.Version;
+import one.digitalinnovation.cigarrostock.dto.CigarroBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
 import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportResultDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.dto.PageSizeDTO;
 import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.ReorderThresholdDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
 import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.exception.CigarroCsvHeaderException;
 import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroReservationNotFoundException;
 import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.CigarroVersionMismatchException;
+import one.digitalinnovation.cigarrostock.service.CigarroCsvService;
+import one.digitalinnovation.cigarrostock.service.CigarroReportService;
+import one.digitalinnovation.cigarrostock.service.CigarroSearchIndex;
 import one.digitalinnovation.cigarrostock.service.CigarroService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/cigarros")
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class CigarroController implements CigarroControllerDocs {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String EXPORT_CONTENT_DISPOSITION = "attachment; filename=\"cigarros.csv\"";
+    private static final Long UNKNOWN_VERSION = -1L;
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final int MAX_SEARCH_SIZE = 50;
+
     private final CigarroService cigarroService;
+    private final CigarroReportService cigarroReportService;
+    private final CigarroCsvService cigarroCsvService;
+    private final CigarroSearchIndex cigarroSearchIndex;
+    private final LowStockAlertBroadcaster lowStockAlertBroadcaster;
+    private final CigarroChangeFeed cigarroChangeFeed;
+    private final CigarroCatalogueVersion cigarroCatalogueVersion;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -35,14 +94,138 @@ public class CigarroController implements CigarroControllerDocs {
         return cigarroService.createCigarro(cigarroDTO);
     }
 
+    @PostMapping("/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<CigarroDTO> createCigarros(@RequestBody @Valid CigarroBatchDTO cigarroBatchDTO) throws CigarroAlreadyRegisteredException {
+        return cigarroService.createCigarros(cigarroBatchDTO.getCigarros());
+    }
+
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE)
+    public CigarroImportResultDTO importCigarros(InputStream csv) throws IOException, CigarroCsvHeaderException {
+        return cigarroCsvService.importCsv(new InputStreamReader(csv, StandardCharsets.UTF_8));
+    }
+
+    @GetMapping(value = "/export", produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCigarros() {
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            cigarroCsvService.exportCsv(writer);
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, EXPORT_CONTENT_DISPOSITION)
+                .body(body);
+    }
+
+    /**
+     * Answers 304 when If-None-Match lists the ETag of the cigarro, or, without that header, when If-Modified-Since
+     * shows the catalogue did not change. The name is resolved first either way, so an unknown one is still a 404.
+     */
     @GetMapping("/{name}")
-    public CigarroDTO findByName(@PathVariable String name) throws CigarroNotFoundException {
-        return cigarroService.findByName(name);
+    public ResponseEntity<CigarroDTO> findByName(@PathVariable String name, @RequestHeader HttpHeaders requestHeaders) throws CigarroNotFoundException {
+        Version catalogueVersion = cigarroCatalogueVersion.current();
+        CigarroDTO cigarroDTO = cigarroService.findByName(name);
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        boolean notModified = ifNoneMatch.isEmpty()
+                ? cigarroCatalogueVersion.isNotModifiedSince(catalogueVersion, requestHeaders.getIfModifiedSince())
+                : cigarroDTO.getVersion() != null && matches(ifNoneMatch, eTag(cigarroDTO));
+        if (notModified) {
+            ResponseEntity.BodyBuilder response = withLastModified(ResponseEntity.status(HttpStatus.NOT_MODIFIED), catalogueVersion);
+            if (cigarroDTO.getVersion() != null) {
+                response.eTag(eTag(cigarroDTO));
+            }
+            return response.build();
+        }
+        return withETag(withLastModified(ResponseEntity.ok(), catalogueVersion), cigarroDTO);
     }
 
+    /**
+     * Serves the listing serialized for the current catalogue version, or 304 when the client already holds it.
+     */
     @GetMapping
-    public List<CigarroDTO> listCigarros() {
-        return cigarroService.listAll();
+    public ResponseEntity<byte[]> listCigarros(@RequestHeader HttpHeaders requestHeaders) throws IOException {
+        Version catalogueVersion = cigarroCatalogueVersion.current();
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        boolean notModified = ifNoneMatch.isEmpty()
+                ? cigarroCatalogueVersion.isNotModifiedSince(catalogueVersion, requestHeaders.getIfModifiedSince())
+                : matches(ifNoneMatch, cigarroCatalogueVersion.eTag(catalogueVersion));
+        if (notModified) {
+            return withLastModified(ResponseEntity.status(HttpStatus.NOT_MODIFIED), catalogueVersion)
+                    .eTag(cigarroCatalogueVersion.eTag(catalogueVersion))
+                    .build();
+        }
+        Listing listing = cigarroCatalogueVersion.listing(() -> objectMapper.writeValueAsBytes(cigarroService.listAll()));
+        return withLastModified(ResponseEntity.ok(), listing.getVersion())
+                .eTag(cigarroCatalogueVersion.eTag(listing.getVersion()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(listing.getBody());
+    }
+
+    @GetMapping(params = "page")
+    public Page<CigarroDTO> listCigarros(Pageable pageable) {
+        return cigarroService.listAll(pageable);
+    }
+
+    @GetMapping("/filter")
+    public Page<CigarroDTO> filterCigarros(@Valid CigarroFilterDTO filter, Pageable pageable) {
+        return cigarroService.filter(filter, pageable);
+    }
+
+    @GetMapping("/search")
+    public List<CigarroSearchResultDTO> search(@RequestParam("q") String query, @RequestParam(defaultValue = "10") int size) {
+        return cigarroSearchIndex.search(query, Math.min(size, MAX_SEARCH_SIZE));
+    }
+
+    @GetMapping(params = "afterId")
+    public List<CigarroDTO> listCigarrosAfter(@RequestParam Long afterId, @Valid PageSizeDTO pageSize) {
+        return cigarroService.listAfter(afterId, pageSize.getSize());
+    }
+
+    @GetMapping("/report/types")
+    public List<StockSummaryDTO> summarizeByType() {
+        return cigarroReportService.summarizeByType();
+    }
+
+    @GetMapping("/report/brands")
+    public List<StockSummaryDTO> summarizeByBrand() {
+        return cigarroReportService.summarizeByBrand();
+    }
+
+    @GetMapping("/report/capacity")
+    public List<CigarroCapacityDTO> findFilledAtLeast(@RequestParam(defaultValue = "80") int percent,
+                                                      @Valid PageSizeDTO pageSize) {
+        return cigarroReportService.findFilledAtLeast(percent, pageSize.getSize());
+    }
+
+    @GetMapping(value = "/stream", produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamCigarros() {
+        return outputStream -> cigarroService.streamAll(cigarroDTO -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(cigarroDTO));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @GetMapping(value = "/alerts", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToLowStockAlerts() {
+        return lowStockAlertBroadcaster.subscribe();
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToChanges(@RequestParam(required = false) Long since,
+                                         @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        return cigarroChangeFeed.subscribe(since != null ? since : lastEventId);
+    }
+
+    @GetMapping("/{id}/movements")
+    public List<StockMovementDTO> findMovements(@PathVariable Long id,
+                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                @Valid PageSizeDTO pageSize) throws CigarroNotFoundException {
+        return cigarroService.findMovements(id, from, to, pageSize.getSize());
     }
 
     @DeleteMapping("/{id}")
@@ -52,7 +235,96 @@ public class CigarroController implements CigarroControllerDocs {
     }
 
     @PatchMapping("/{id}/increment")
-    public CigarroDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws CigarroNotFoundException, CigarroStockExceededException {
-        return cigarroService.increment(id, quantityDTO.getQuantity());
+    public ResponseEntity<CigarroDTO> increment(@PathVariable Long id,
+                                                @RequestBody @Valid QuantityDTO quantityDTO,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws CigarroNotFoundException, CigarroStockExceededException, CigarroVersionMismatchException {
+        Long expectedVersion = parseVersion(id, ifMatch);
+        if (expectedVersion == null) {
+            return withETag(cigarroService.increment(id, quantityDTO.getQuantity()));
+        }
+        return withETag(cigarroService.increment(id, quantityDTO.getQuantity(), expectedVersion));
+    }
+
+    @PatchMapping("/{id}/decrement")
+    public ResponseEntity<CigarroDTO> decrement(@PathVariable Long id,
+                                                @RequestBody @Valid QuantityDTO quantityDTO,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws CigarroNotFoundException, CigarroStockInsufficientException, CigarroVersionMismatchException {
+        Long expectedVersion = parseVersion(id, ifMatch);
+        if (expectedVersion == null) {
+            return withETag(cigarroService.decrement(id, quantityDTO.getQuantity()));
+        }
+        return withETag(cigarroService.decrement(id, quantityDTO.getQuantity(), expectedVersion));
+    }
+
+    @PutMapping("/{id}/reorder-threshold")
+    public CigarroDTO updateReorderThreshold(@PathVariable Long id, @RequestBody @Valid ReorderThresholdDTO reorderThresholdDTO) throws CigarroNotFoundException {
+        return cigarroService.updateReorderThreshold(id, reorderThresholdDTO.getReorderThreshold());
+    }
+
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws CigarroNotFoundException, CigarroStockInsufficientException {
+        return cigarroService.reserve(id, quantityDTO.getQuantity());
+    }
+
+    @PostMapping("/reservations/{reservationId}/commit")
+    public CigarroDTO commitReservation(@PathVariable UUID reservationId) throws CigarroReservationNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException {
+        return cigarroService.commitReservation(reservationId);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable UUID reservationId) throws CigarroReservationNotFoundException {
+        cigarroService.releaseReservation(reservationId);
+    }
+
+    @PostMapping("/movements")
+    public List<MovementResultDTO> applyMovements(@RequestBody @Valid MovementBatchDTO movementBatchDTO) throws CigarroConcurrentUpdateException {
+        return cigarroService.applyMovements(movementBatchDTO.getMovements());
+    }
+
+    private ResponseEntity<CigarroDTO> withETag(CigarroDTO cigarroDTO) {
+        return withETag(ResponseEntity.ok(), cigarroDTO);
+    }
+
+    private ResponseEntity<CigarroDTO> withETag(ResponseEntity.BodyBuilder response, CigarroDTO cigarroDTO) {
+        if (cigarroDTO.getVersion() != null) {
+            response.eTag(eTag(cigarroDTO));
+        }
+        return response.body(cigarroDTO);
+    }
+
+    private String eTag(CigarroDTO cigarroDTO) {
+        return cigarroCatalogueVersion.eTag(cigarroDTO.getId(), cigarroDTO.getVersion());
+    }
+
+    private ResponseEntity.BodyBuilder withLastModified(ResponseEntity.BodyBuilder response, Version catalogueVersion) {
+        long lastModified = cigarroCatalogueVersion.lastModified(catalogueVersion);
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        return response.cacheControl(CacheControl.noCache());
+    }
+
+    /**
+     * Tells whether an If-None-Match header lists the given ETag, weak ones included, or is "*".
+     */
+    private static boolean matches(List<String> ifNoneMatch, String eTag) {
+        return ifNoneMatch.stream()
+                .map(tag -> tag.trim().replaceFirst("^W/", "").replace("\"", ""))
+                .anyMatch(tag -> tag.equals("*") || tag.equals(eTag));
+    }
+
+    /**
+     * Reads the cigarro version out of an If-Match header; no header or "*" means an unconditional update. A tag
+     * of another cigarro, or from before a restart, never matches.
+     */
+    private Long parseVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim().replaceFirst("^W/", "").replace("\"", "");
+        Long version = cigarroCatalogueVersion.cigarroVersion(eTag, id);
+        return version != null ? version : UNKNOWN_VERSION;
     }
 }
@@ -1,15 +1,45 @@
 package one.digitalinnovation.cigarrostock.controller;
 
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import one.digitalinnovation.cigarrostock.dto.CigarroBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
 import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportResultDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.dto.PageSizeDTO;
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.ReorderThresholdDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
 import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.exception.CigarroCsvHeaderException;
 import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroReservationNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.CigarroVersionMismatchException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 
 @Api("Manages Cigarro stock")
 public interface CigarroControllerDocs {
@@ -21,18 +51,112 @@ public interface CigarroControllerDocs {
     })
     CigarroDTO createCigarro(CigarroDTO cigarroDTO) throws CigarroAlreadyRegisteredException;
 
-    @ApiOperation(value = "Returns cigarro found by a given name")
+    @ApiOperation(value = "Cigarro bulk creation operation, with all cigarros inserted in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Success cigarros creation"),
+            @ApiResponse(code = 400, message = "Missing required fields, wrong field range value or cigarro already registered.")
+    })
+    List<CigarroDTO> createCigarros(CigarroBatchDTO cigarroBatchDTO) throws CigarroAlreadyRegisteredException;
+
+    @ApiOperation(value = "Cigarro CSV import operation, with the header naming the columns and valid lines inserted in batches")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of cigarros imported, and the rejected lines with the reason"),
+            @ApiResponse(code = 400, message = "CSV header is missing required columns.")
+    })
+    CigarroImportResultDTO importCigarros(InputStream csv) throws IOException, CigarroCsvHeaderException;
+
+    @ApiOperation(value = "Streams the whole catalogue as CSV, in a format the import accepts")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "CSV file with one line per cigarro"),
+    })
+    ResponseEntity<StreamingResponseBody> exportCigarros();
+
+    @ApiOperation(value = "Returns cigarro found by a given name, or 304 when If-None-Match or If-Modified-Since shows it is unchanged")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Success cigarro found in the system"),
+            @ApiResponse(code = 304, message = "Cigarro not modified since the version held by the client."),
             @ApiResponse(code = 404, message = "cigarro with given name not found.")
     })
-    CigarroDTO findByName(@PathVariable String name) throws CigarroNotFoundException;
+    ResponseEntity<CigarroDTO> findByName(@PathVariable String name, HttpHeaders requestHeaders) throws CigarroNotFoundException;
 
-    @ApiOperation(value = "Returns a list of all cigarros registered in the system")
+    @ApiOperation(value = "Returns a list of all cigarros registered in the system, or 304 when If-None-Match or If-Modified-Since shows it is unchanged",
+            response = CigarroDTO.class, responseContainer = "List")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "List of all cigarros registered in the system"),
+            @ApiResponse(code = 304, message = "Catalogue not modified since the version held by the client.")
+    })
+    ResponseEntity<byte[]> listCigarros(HttpHeaders requestHeaders) throws IOException;
+
+    @ApiOperation(value = "Returns a page of cigarros registered in the system")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of cigarros registered in the system"),
+    })
+    Page<CigarroDTO> listCigarros(Pageable pageable);
+
+    @ApiOperation(value = "Returns a page of cigarros matching the informed brand, type and quantity range")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of cigarros matching the filter"),
+            @ApiResponse(code = 400, message = "Wrong filter value.")
+    })
+    Page<CigarroDTO> filterCigarros(CigarroFilterDTO filter, Pageable pageable);
+
+    @ApiOperation(value = "Returns up to size cigarros, at most 50, whose name or a word of their name or brand starts with the query, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Cigarros matching the query, whole name matches first"),
+    })
+    List<CigarroSearchResultDTO> search(String query, int size);
+
+    @ApiOperation(value = "Returns the cigarros with id greater than the given one, in id order")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Next cigarros after the given id"),
+            @ApiResponse(code = 400, message = "Size lower than 1.")
+    })
+    List<CigarroDTO> listCigarrosAfter(Long afterId, PageSizeDTO pageSize);
+
+    @ApiOperation(value = "Subscribes to low-stock alerts, pushed as server-sent events when a cigarro reaches its reorder threshold")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stream of low-stock alerts"),
+    })
+    SseEmitter subscribeToLowStockAlerts();
+
+    @ApiOperation(value = "Streams committed cigarro changes as server-sent events, resuming after the given sequence or Last-Event-ID when informed")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stream of cigarro changes, preceded by a reset event when the missed ones are no longer available"),
+    })
+    SseEmitter subscribeToChanges(Long since, Long lastEventId);
+
+    @ApiOperation(value = "Returns the stock movements journaled for a cigarro between two instants, oldest first")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock movements in the given time range"),
+            @ApiResponse(code = 400, message = "Size lower than 1."),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found.")
+    })
+    List<StockMovementDTO> findMovements(Long id, Instant from, Instant to, PageSizeDTO pageSize) throws CigarroNotFoundException;
+
+    @ApiOperation(value = "Returns the total units, max capacity and fill ratio of the stock per cigarro type")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock summary per cigarro type"),
     })
-    List<CigarroDTO> listCigarros();
+    List<StockSummaryDTO> summarizeByType();
+
+    @ApiOperation(value = "Returns the total units, max capacity and fill ratio of the stock per brand")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock summary per brand"),
+    })
+    List<StockSummaryDTO> summarizeByBrand();
+
+    @ApiOperation(value = "Returns the cigarros filled to at least the given percentage of their max capacity, fullest first")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Cigarros at or above the given fill percentage"),
+            @ApiResponse(code = 400, message = "Size lower than 1.")
+    })
+    List<CigarroCapacityDTO> findFilledAtLeast(int percent, PageSizeDTO pageSize);
+
+    @ApiOperation(value = "Streams all cigarros registered in the system as newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stream of all cigarros registered in the system"),
+    })
+    StreamingResponseBody streamCigarros();
 
     @ApiOperation(value = "Delete a cigarro found by a given valid Id")
     @ApiResponses(value = {
@@ -40,4 +164,69 @@ public interface CigarroControllerDocs {
             @ApiResponse(code = 404, message = "Cigarro with given id not found.")
     })
     void deleteById(@PathVariable Long id) throws CigarroNotFoundException;
+
+    @ApiOperation(value = "Increments the stock of a cigarro found by a given valid Id, optionally only if it still matches the ETag informed in If-Match")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success cigarro stock incremented"),
+            @ApiResponse(code = 400, message = "Quantity to increment exceeds the max stock capacity."),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found."),
+            @ApiResponse(code = 412, message = "Cigarro changed since the ETag informed in If-Match."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    ResponseEntity<CigarroDTO> increment(@PathVariable Long id, QuantityDTO quantityDTO, String ifMatch) throws CigarroNotFoundException, CigarroStockExceededException, CigarroVersionMismatchException;
+
+    @ApiOperation(value = "Decrements the stock of a cigarro found by a given valid Id, optionally only if it still matches the ETag informed in If-Match")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success cigarro stock decremented"),
+            @ApiResponse(code = 400, message = "Quantity to decrement exceeds the available stock."),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found."),
+            @ApiResponse(code = 412, message = "Cigarro changed since the ETag informed in If-Match."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    ResponseEntity<CigarroDTO> decrement(@PathVariable Long id, QuantityDTO quantityDTO, String ifMatch) throws CigarroNotFoundException, CigarroStockInsufficientException, CigarroVersionMismatchException;
+
+    @ApiOperation(value = "Sets the stock level at or below which a low-stock alert is raised for a cigarro, or clears it when empty")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Reorder threshold updated"),
+            @ApiResponse(code = 400, message = "Invalid reorder threshold."),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found.")
+    })
+    CigarroDTO updateReorderThreshold(@PathVariable Long id, ReorderThresholdDTO reorderThresholdDTO) throws CigarroNotFoundException;
+
+    @ApiOperation(value = "Holds stock of a cigarro for a few seconds without decrementing it")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Success stock reserved"),
+            @ApiResponse(code = 400, message = "Quantity to reserve exceeds the available stock."),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found.")
+    })
+    ReservationDTO reserve(@PathVariable Long id, QuantityDTO quantityDTO) throws CigarroNotFoundException, CigarroStockInsufficientException;
+
+    @ApiOperation(value = "Commits a reservation, decrementing the reserved stock")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success reservation committed"),
+            @ApiResponse(code = 404, message = "Reservation with given id not found or already expired.")
+    })
+    CigarroDTO commitReservation(@PathVariable UUID reservationId) throws CigarroReservationNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException;
+
+    @ApiOperation(value = "Releases a reservation, giving the reserved stock back")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Success reservation released"),
+            @ApiResponse(code = 404, message = "Reservation with given id not found or already expired.")
+    })
+    void releaseReservation(@PathVariable UUID reservationId) throws CigarroReservationNotFoundException;
+
+    @ApiOperation(value = "Applies a batch of stock movements in a single transaction")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Result of each stock movement, in the order informed"),
+            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value."),
+            @ApiResponse(code = 409, message = "Cigarros kept being updated concurrently."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    List<MovementResultDTO> applyMovements(MovementBatchDTO movementBatchDTO) throws CigarroConcurrentUpdateException;
 }
@@ -0,0 +1,47 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Tells the clients of the API apart for the per-client filters: by the authenticated principal when there is one,
+ * otherwise by the remote address. The X-Client-Id header is only believed when the request comes from one of the
+ * configured trusted proxies, which set it for the clients behind them; from anyone else it could be made up on
+ * every request to get a fresh identity.
+ * <p>
+ * Each kind of identity has its own prefix, so a client id can never pose as a principal or an address.
+ */
+@Component
+public class ClientIdentityResolver {
+
+    public static final String CLIENT_ID = "X-Client-Id";
+
+    private static final int MAX_CLIENT_ID_LENGTH = 100;
+
+    private final Set<String> trustedProxies;
+
+    @Autowired
+    public ClientIdentityResolver(@Value("${cigarro.client-id.trusted-proxies:}") Set<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public String resolve(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "principal:" + principal.getName();
+        }
+        String remoteAddress = request.getRemoteAddr();
+        if (trustedProxies.contains(remoteAddress)) {
+            String clientId = request.getHeader(CLIENT_ID);
+            if (clientId != null && !clientId.isEmpty() && clientId.length() <= MAX_CLIENT_ID_LENGTH) {
+                return "client:" + clientId;
+            }
+        }
+        return "address:" + remoteAddress;
+    }
+}
@@ -0,0 +1,152 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sheds stock movements with 503 once too many are running at the same time, so a slow database makes requests
+ * fail fast instead of piling up on its connections. The limit adapts to the latency of the movements: it grows by
+ * one while they complete within the target latency and the limit is being used, and shrinks by a tenth when one
+ * exceeds it, at most once per round of requests started after the previous cut.
+ */
+@Component
+@Order(ConcurrencyLimitFilter.ORDER)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    static final int ORDER = IdempotencyKeyFilter.ORDER + 10;
+
+    private static final String LIMIT_METRIC = "cigarro.concurrency.limit";
+    private static final String IN_FLIGHT_METRIC = "cigarro.concurrency.in-flight";
+    private static final String REJECTED_METRIC = "cigarro.concurrency.rejected";
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final List<String> LIMITED_PATHS = Arrays.asList(
+            "/api/cigarros/*/increment",
+            "/api/cigarros/*/decrement",
+            "/api/cigarros/movements",
+            "/api/cigarros/*/reservations",
+            "/api/cigarros/reservations/*/commit",
+            "/api/warehouses/*/stock/*/increment",
+            "/api/warehouses/*/stock/*/decrement",
+            "/api/warehouses/transfers");
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastDecrease;
+    private final Counter rejectedRequests;
+
+    @Autowired
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${cigarro.concurrency.enabled:true}") boolean enabled,
+                                  @Value("${cigarro.concurrency.initial-limit:20}") int initialLimit,
+                                  @Value("${cigarro.concurrency.min-limit:2}") int minLimit,
+                                  @Value("${cigarro.concurrency.max-limit:200}") int maxLimit,
+                                  @Value("${cigarro.concurrency.target-latency-ms:100}") long targetLatencyMillis) {
+        this(meterRegistry, enabled, initialLimit, minLimit, maxLimit, targetLatencyMillis, System::nanoTime);
+    }
+
+    ConcurrencyLimitFilter(MeterRegistry meterRegistry, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                           long targetLatencyMillis, LongSupplier nanoTime) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.nanoTime = nanoTime;
+        this.limit = new AtomicInteger(initialLimit);
+        this.lastDecrease = new AtomicLong(nanoTime.getAsLong());
+        this.rejectedRequests = meterRegistry.counter(REJECTED_METRIC);
+        Gauge.builder(LIMIT_METRIC, limit, AtomicInteger::get)
+                .description("Stock movements allowed to run at the same time")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_METRIC, inFlight, AtomicInteger::get)
+                .description("Stock movements running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return LIMITED_PATHS.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        int running = tryAcquire();
+        if (running < 0) {
+            rejectedRequests.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many stock movements running, please retry later");
+            return;
+        }
+        long start = nanoTime.getAsLong();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+            onCompleted(start, nanoTime.getAsLong() - start, running);
+        }
+    }
+
+    /**
+     * Takes a slot, returning how many requests are running with this one, or -1 when the limit is reached.
+     */
+    private int tryAcquire() {
+        while (true) {
+            int running = inFlight.get();
+            if (running >= limit.get()) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                return running + 1;
+            }
+        }
+    }
+
+    private void onCompleted(long start, long latencyNanos, int running) {
+        if (latencyNanos > targetLatencyNanos) {
+            long decreasedAt = lastDecrease.get();
+            // requests started before the previous cut already ran under the higher limit
+            if (start - decreasedAt > 0 && lastDecrease.compareAndSet(decreasedAt, nanoTime.getAsLong())) {
+                limit.updateAndGet(current -> Math.max(minLimit, (int) (current * BACKOFF_RATIO)));
+            }
+        } else if (running * 2 >= limit.get()) {
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    int limit() {
+        return limit.get();
+    }
+}
@@ -0,0 +1,268 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes stock movements safe to retry. A movement request carrying an Idempotency-Key header is executed once;
+ * a retry with the same key gets the stored response back, marked with Idempotent-Replayed, without reaching the
+ * controller or the database again.
+ * <p>
+ * Keys are scoped to the client, as told apart by the {@link ClientIdentityResolver}, so one client can neither
+ * replay nor block the responses of another by guessing its keys. They live in a bounded in-memory cache and expire
+ * a while after their first use. A key sent again with another request is answered with 422, and a retry arriving
+ * while the first request is still running with 409. Server errors and conflicts are not stored, so retrying them
+ * executes the request again.
+ * <p>
+ * The body is read up front to fingerprint the request, so bodies over the configured size are rejected with 413.
+ */
+@Component
+@Order(IdempotencyKeyFilter.ORDER)
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    /**
+     * After the request metrics filter, so rejected and replayed requests are still measured; rate limiting comes
+     * before this filter and load shedding after it, so replays are limited but never shed.
+     */
+    static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 30;
+
+    private static final String REPLAYED_METRIC = "cigarro.idempotency.replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final List<String> IDEMPOTENT_PATHS = Arrays.asList(
+            "/api/cigarros/*/increment",
+            "/api/cigarros/*/decrement",
+            "/api/cigarros/movements",
+            "/api/warehouses/*/stock/*/increment",
+            "/api/warehouses/*/stock/*/decrement",
+            "/api/warehouses/transfers");
+    private static final List<String> REPLAYED_HEADERS = Arrays.asList(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG);
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final ClientIdentityResolver clientIdentityResolver;
+    private final int maxBodyBytes;
+    private final ConcurrentMap<String, StoredRequest> requests;
+    private final Counter replayedRequests;
+
+    @Autowired
+    public IdempotencyKeyFilter(MeterRegistry meterRegistry,
+                                ClientIdentityResolver clientIdentityResolver,
+                                @Value("${cigarro.idempotency.max-keys:50000}") long maxKeys,
+                                @Value("${cigarro.idempotency.ttl-seconds:3600}") long ttlSeconds,
+                                @Value("${cigarro.idempotency.max-body-bytes:1048576}") int maxBodyBytes) {
+        this.clientIdentityResolver = clientIdentityResolver;
+        this.maxBodyBytes = maxBodyBytes;
+        Cache<String, StoredRequest> cache = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.requests = cache.asMap();
+        this.replayedRequests = meterRegistry.counter(REPLAYED_METRIC);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY) == null || HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return IDEMPOTENT_PATHS.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), IDEMPOTENCY_KEY + " must have between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = readBody(request);
+        if (body == null) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Requests with an " + IDEMPOTENCY_KEY + " are limited to " + maxBodyBytes + " bytes");
+            return;
+        }
+        // header values cannot hold a line break, so no client identity and key pair can be mistaken for another
+        String clientKey = clientIdentityResolver.resolve(request) + "\n" + key;
+        StoredRequest storedRequest = new StoredRequest(fingerprint(request, body));
+        StoredRequest previousRequest = requests.putIfAbsent(clientKey, storedRequest);
+        if (previousRequest != null) {
+            replay(previousRequest, storedRequest.fingerprint, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), cachingResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            requests.remove(clientKey, storedRequest);
+            throw e;
+        }
+        if (isFinal(cachingResponse.getStatus())) {
+            storedRequest.response = new StoredResponse(cachingResponse);
+        } else {
+            requests.remove(clientKey, storedRequest);
+        }
+        cachingResponse.copyBodyToResponse();
+    }
+
+    /**
+     * Reads the body, or returns null as soon as it is known to be over the size limit.
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            return null;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        return body.length > maxBodyBytes ? null : body;
+    }
+
+    private void replay(StoredRequest previousRequest, String fingerprint, HttpServletResponse response) throws IOException {
+        if (!previousRequest.fingerprint.equals(fingerprint)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), IDEMPOTENCY_KEY + " was already used for a different request");
+            return;
+        }
+        StoredResponse storedResponse = previousRequest.response;
+        if (storedResponse == null) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY + " is still in progress");
+            return;
+        }
+        replayedRequests.increment();
+        response.setStatus(storedResponse.status);
+        for (int i = 0; i < REPLAYED_HEADERS.size(); i++) {
+            if (storedResponse.headers[i] != null) {
+                response.setHeader(REPLAYED_HEADERS.get(i), storedResponse.headers[i]);
+            }
+        }
+        response.setHeader(IDEMPOTENT_REPLAYED, Boolean.TRUE.toString());
+        response.setContentLength(storedResponse.body.length);
+        response.getOutputStream().write(storedResponse.body);
+    }
+
+    /**
+     * Client errors are the final outcome of a request; server errors and conflicts may succeed when retried.
+     */
+    private static boolean isFinal(int status) {
+        return status < HttpStatus.INTERNAL_SERVER_ERROR.value() && status != HttpStatus.CONFLICT.value();
+    }
+
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class StoredRequest {
+
+        private final String fingerprint;
+        private volatile StoredResponse response;
+
+        private StoredRequest(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class StoredResponse {
+
+        private final int status;
+        private final String[] headers;
+        private final byte[] body;
+
+        private StoredResponse(ContentCachingResponseWrapper response) {
+            this.status = response.getStatus();
+            this.headers = REPLAYED_HEADERS.stream().map(response::getHeader).toArray(String[]::new);
+            this.body = response.getContentAsByteArray();
+        }
+    }
+
+    /**
+     * Lets the controller read the body again after it was read to fingerprint the request.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new IllegalStateException("Async reads are not supported: the body was already read to fingerprint the request");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
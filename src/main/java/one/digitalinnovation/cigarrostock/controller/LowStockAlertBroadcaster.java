@@ -0,0 +1,101 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.cigarrostock.event.LowStockEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes low-stock alerts to every subscribed SSE client.
+ * <p>
+ * Like the {@link CigarroChangeFeed}, the thread raising an alert only queues it: each subscriber has a bounded
+ * buffer drained by a small sender pool, and a subscriber whose buffer is full is disconnected.
+ */
+@Component
+public class LowStockAlertBroadcaster {
+
+    static final String LOW_STOCK_EVENT_NAME = "low-stock";
+    private static final String DROPPED_METRIC = "cigarro.alerts.dropped";
+
+    private final int subscriberBufferSize;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final Counter droppedSubscribers;
+    private final Set<BufferedSseSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public LowStockAlertBroadcaster(MeterRegistry meterRegistry,
+                                    @Value("${cigarro.alerts.subscriber-buffer-size:64}") int subscriberBufferSize,
+                                    @Value("${cigarro.alerts.sender-threads:2}") int senderThreads,
+                                    @Value("${cigarro.alerts.sse-timeout-ms:1800000}") long timeoutMillis) {
+        this(meterRegistry, subscriberBufferSize, timeoutMillis, Executors.newFixedThreadPool(senderThreads, senderThreadFactory()));
+    }
+
+    LowStockAlertBroadcaster(MeterRegistry meterRegistry, int subscriberBufferSize, long timeoutMillis, ExecutorService senders) {
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.senders = senders;
+        this.droppedSubscribers = meterRegistry.counter(DROPPED_METRIC);
+    }
+
+    private static CustomizableThreadFactory senderThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cigarro-alerts-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        BufferedSseSubscriber subscriber = new BufferedSseSubscriber(emitter, subscriberBufferSize, senders, subscribers::remove);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @EventListener
+    public void broadcast(LowStockEvent event) {
+        SseEventBuilder alert = SseEmitter.event()
+                .name(LOW_STOCK_EVENT_NAME)
+                .data(event.getAlert());
+        for (BufferedSseSubscriber subscriber : subscribers) {
+            if (subscriber.offer(alert)) {
+                subscriber.scheduleSend();
+            } else {
+                drop(subscriber);
+            }
+        }
+    }
+
+    private void drop(BufferedSseSubscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            droppedSubscribers.increment();
+            subscriber.close();
+        }
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+}
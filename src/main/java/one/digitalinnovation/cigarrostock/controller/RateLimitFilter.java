@@ -0,0 +1,126 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client rate limit on the API, so one flooding client cannot take the threads and connections of the others.
+ * Each client, as told apart by the {@link ClientIdentityResolver}, gets a token bucket refilled at a steady rate; a request finding the bucket empty is rejected with 429 and a Retry-After header.
+ * <p>
+ * Buckets are kept in a bounded cache and dropped once their client goes quiet.
+ */
+@Component
+@Order(RateLimitFilter.ORDER)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final int ORDER = IdempotencyKeyFilter.ORDER - 10;
+
+    private static final String API_PATH = "/api/";
+    private static final String REJECTED_METRIC = "cigarro.rate-limit.rejected";
+
+    private final ClientIdentityResolver clientIdentityResolver;
+    private final boolean enabled;
+    private final long refillIntervalNanos;
+    private final int burst;
+    private final LongSupplier nanoTime;
+    private final Cache<String, TokenBucket> buckets;
+    private final Counter rejectedRequests;
+
+    @Autowired
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           ClientIdentityResolver clientIdentityResolver,
+                           @Value("${cigarro.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${cigarro.rate-limit.requests-per-second:50}") double requestsPerSecond,
+                           @Value("${cigarro.rate-limit.burst:100}") int burst,
+                           @Value("${cigarro.rate-limit.max-clients:100000}") long maxClients) {
+        this(meterRegistry, clientIdentityResolver, enabled, requestsPerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    RateLimitFilter(MeterRegistry meterRegistry, ClientIdentityResolver clientIdentityResolver, boolean enabled,
+                    double requestsPerSecond, int burst, long maxClients, LongSupplier nanoTime) {
+        this.clientIdentityResolver = clientIdentityResolver;
+        this.enabled = enabled;
+        this.refillIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.burst = burst;
+        this.nanoTime = nanoTime;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(refillIntervalNanos * burst).plusMinutes(1))
+                .build();
+        this.rejectedRequests = meterRegistry.counter(REJECTED_METRIC);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith(request.getContextPath() + API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long now = nanoTime.getAsLong();
+        TokenBucket bucket = buckets.get(clientIdentityResolver.resolve(request), client -> new TokenBucket(now));
+        long waitNanos = bucket.tryAcquire(now, refillIntervalNanos, burst);
+        if (waitNanos > 0) {
+            rejectedRequests.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(toRetryAfterSeconds(waitNanos)));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, please retry later");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Token bucket held in a single timestamp, the time at which it will be full again, so taking a token is one
+     * compare-and-set: the bucket holds {@code burst} tokens when that time has passed, one less for each refill
+     * interval still to go.
+     */
+    static final class TokenBucket {
+
+        private final AtomicLong fullAt;
+
+        TokenBucket(long now) {
+            this.fullAt = new AtomicLong(now);
+        }
+
+        /**
+         * Takes a token, returning 0, or returns how long to wait until one is available.
+         */
+        long tryAcquire(long now, long refillIntervalNanos, int burst) {
+            long capacityNanos = refillIntervalNanos * burst;
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + refillIntervalNanos;
+                long excessNanos = next - now - capacityNanos;
+                if (excessNanos > 0) {
+                    return excessNanos;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.cigarrostock.dto.CigarroLocationsDTO;
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseNotFoundException;
+import one.digitalinnovation.cigarrostock.service.WarehouseService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/warehouses")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class WarehouseController implements WarehouseControllerDocs {
+
+    private final WarehouseService warehouseService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public WarehouseDTO createWarehouse(@RequestBody @Valid WarehouseDTO warehouseDTO) throws WarehouseAlreadyRegisteredException {
+        return warehouseService.createWarehouse(warehouseDTO);
+    }
+
+    @GetMapping
+    public List<WarehouseDTO> listWarehouses() {
+        return warehouseService.listAll();
+    }
+
+    @GetMapping("/stock/{cigarroId}")
+    public CigarroLocationsDTO findLocations(@PathVariable Long cigarroId) throws CigarroNotFoundException {
+        return warehouseService.findLocations(cigarroId);
+    }
+
+    @PatchMapping("/{warehouseId}/stock/{cigarroId}/increment")
+    public WarehouseStockDTO increment(@PathVariable Long warehouseId,
+                                       @PathVariable Long cigarroId,
+                                       @RequestBody @Valid QuantityDTO quantityDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockExceededException {
+        return warehouseService.increment(warehouseId, cigarroId, quantityDTO.getQuantity());
+    }
+
+    @PatchMapping("/{warehouseId}/stock/{cigarroId}/decrement")
+    public WarehouseStockDTO decrement(@PathVariable Long warehouseId,
+                                       @PathVariable Long cigarroId,
+                                       @RequestBody @Valid QuantityDTO quantityDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException {
+        return warehouseService.decrement(warehouseId, cigarroId, quantityDTO.getQuantity());
+    }
+
+    @PostMapping("/transfers")
+    public List<WarehouseStockDTO> transfer(@RequestBody @Valid StockTransferDTO stockTransferDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException, CigarroStockExceededException {
+        return warehouseService.transfer(stockTransferDTO);
+    }
+}
@@ -0,0 +1,76 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiImplicitParam;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import one.digitalinnovation.cigarrostock.dto.CigarroLocationsDTO;
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseNotFoundException;
+
+import java.util.List;
+
+@Api("Manages Cigarro stock per warehouse")
+public interface WarehouseControllerDocs {
+
+    @ApiOperation(value = "Warehouse creation operation")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Success warehouse creation"),
+            @ApiResponse(code = 400, message = "Missing required fields, wrong field range value or warehouse code already registered.")
+    })
+    WarehouseDTO createWarehouse(WarehouseDTO warehouseDTO) throws WarehouseAlreadyRegisteredException;
+
+    @ApiOperation(value = "Returns a list of all warehouses registered")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "List of all warehouses registered in the system"),
+    })
+    List<WarehouseDTO> listWarehouses();
+
+    @ApiOperation(value = "Returns the stock of a cigarro at each warehouse, with its total across warehouses")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock of the cigarro per warehouse"),
+            @ApiResponse(code = 404, message = "Cigarro with given id not found.")
+    })
+    CigarroLocationsDTO findLocations(Long cigarroId) throws CigarroNotFoundException;
+
+    @ApiOperation(value = "Increment the stock of a cigarro at a warehouse, up to the cigarro max capacity")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success cigarro stock incremented at the warehouse"),
+            @ApiResponse(code = 400, message = "The stock at the warehouse would exceed the cigarro max capacity."),
+            @ApiResponse(code = 404, message = "Warehouse or cigarro with given id not found."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    WarehouseStockDTO increment(Long warehouseId, Long cigarroId, QuantityDTO quantityDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockExceededException;
+
+    @ApiOperation(value = "Decrement the stock of a cigarro at a warehouse")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success cigarro stock decremented at the warehouse"),
+            @ApiResponse(code = 400, message = "Not enough stock at the warehouse."),
+            @ApiResponse(code = 404, message = "Warehouse or cigarro with given id not found."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    WarehouseStockDTO decrement(Long warehouseId, Long cigarroId, QuantityDTO quantityDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException;
+
+    @ApiOperation(value = "Moves stock of a cigarro between two warehouses, applied at both or at none")
+    @ApiImplicitParam(name = IdempotencyKeyFilter.IDEMPOTENCY_KEY, paramType = "header", dataTypeClass = String.class,
+            value = "Optional key making retries of this movement return the first response instead of applying it again")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock left at the source warehouse, then the stock at the destination one"),
+            @ApiResponse(code = 400, message = "Same warehouse at both ends, not enough stock at the source or max capacity exceeded at the destination."),
+            @ApiResponse(code = 404, message = "Warehouse or cigarro with given id not found."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    List<WarehouseStockDTO> transfer(StockTransferDTO stockTransferDTO) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException, CigarroStockExceededException;
+}
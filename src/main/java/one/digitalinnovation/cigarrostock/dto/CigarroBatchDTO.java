@@ -0,0 +1,23 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroBatchDTO {
+
+    @NotEmpty
+    @Size(max = 1000)
+    @Valid
+    private List<CigarroDTO> cigarros;
+}
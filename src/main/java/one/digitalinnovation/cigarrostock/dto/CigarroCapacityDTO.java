@@ -0,0 +1,29 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroCapacityDTO {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    private Integer quantity;
+
+    private Integer max;
+
+    private Double fillRatio;
+
+    public CigarroCapacityDTO(Long id, String name, String brand, Integer quantity, Integer max) {
+        this(id, name, brand, quantity, max, max == 0 ? 0d : (double) quantity / max);
+    }
+}
@@ -0,0 +1,28 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.CigarroChangeType;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroChangeDTO {
+
+    private Long sequence;
+
+    private CigarroChangeType type;
+
+    private Long cigarroId;
+
+    private String name;
+
+    private Integer quantity;
+
+    private Instant occurredAt;
+}
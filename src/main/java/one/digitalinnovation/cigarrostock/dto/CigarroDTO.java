@@ -1,5 +1,6 @@
 package one.digitalinnovation.cigarrostock.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +10,7 @@ import one.digitalinnovation.cigarrostock.enums.CigarroType;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
@@ -39,4 +41,11 @@ public class CigarroDTO {
     @Enumerated(EnumType.STRING)
     @NotNull
     private CigarroType type;
+
+    @Min(0)
+    @Max(500)
+    private Integer reorderThreshold;
+
+    @JsonIgnore
+    private Long version;
 }
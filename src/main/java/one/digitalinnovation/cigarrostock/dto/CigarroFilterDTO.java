@@ -0,0 +1,26 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+
+import javax.validation.constraints.Min;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroFilterDTO {
+
+    private String brand;
+
+    private CigarroType type;
+
+    @Min(0)
+    private Integer minQuantity;
+
+    @Min(0)
+    private Integer maxQuantity;
+}
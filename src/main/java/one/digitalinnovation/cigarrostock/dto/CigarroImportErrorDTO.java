@@ -0,0 +1,17 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroImportErrorDTO {
+
+    private long line;
+
+    private String message;
+}
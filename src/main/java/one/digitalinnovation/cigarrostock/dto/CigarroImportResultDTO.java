@@ -0,0 +1,24 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroImportResultDTO {
+
+    private long imported;
+
+    private long rejected;
+
+    /**
+     * The first rejected lines, up to the configured limit; {@link #rejected} counts all of them.
+     */
+    private List<CigarroImportErrorDTO> errors;
+}
@@ -0,0 +1,24 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CigarroLocationsDTO {
+
+    private Long cigarroId;
+
+    /**
+     * Units across every warehouse, maintained as movements commit.
+     */
+    private long total;
+
+    private List<WarehouseStockDTO> locations;
+}
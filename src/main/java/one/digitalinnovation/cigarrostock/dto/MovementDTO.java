@@ -0,0 +1,25 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovementDTO {
+
+    @NotNull
+    private Long id;
+
+    @NotNull
+    @Min(-500)
+    @Max(500)
+    private Integer quantity;
+}
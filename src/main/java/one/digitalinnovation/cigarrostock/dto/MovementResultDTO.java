@@ -0,0 +1,20 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovementResultDTO {
+
+    private Long id;
+
+    private Integer quantity;
+
+    private MovementStatus status;
+}
@@ -0,0 +1,21 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Number of results asked for through the size query parameter; sizes above the largest page served are capped.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageSizeDTO {
+
+    @NotNull
+    @Min(1)
+    private Integer size = 100;
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReorderThresholdDTO {
+
+    @Min(0)
+    @Max(500)
+    private Integer reorderThreshold;
+}
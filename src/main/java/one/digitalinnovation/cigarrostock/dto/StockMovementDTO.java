@@ -0,0 +1,26 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementDTO {
+
+    private Long id;
+
+    private Long cigarroId;
+
+    private Integer quantity;
+
+    private StockMovementType type;
+
+    private Instant movedAt;
+}
@@ -0,0 +1,35 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSummaryDTO {
+
+    private String group;
+
+    private Long skus;
+
+    private Long quantity;
+
+    private Long max;
+
+    private Double fillRatio;
+
+    /**
+     * Used by the aggregate queries; the fill ratio is computed once per group from the summed columns.
+     */
+    public StockSummaryDTO(String group, Long skus, Long quantity, Long max) {
+        this(group, skus, quantity, max, max == 0 ? 0d : (double) quantity / max);
+    }
+
+    public StockSummaryDTO(CigarroType type, Long skus, Long quantity, Long max) {
+        this(type.name(), skus, quantity, max);
+    }
+}
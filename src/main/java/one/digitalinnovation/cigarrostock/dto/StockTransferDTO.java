@@ -0,0 +1,39 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferDTO {
+
+    @NotNull
+    private Long cigarroId;
+
+    @NotNull
+    private Long fromWarehouseId;
+
+    @NotNull
+    private Long toWarehouseId;
+
+    @NotNull
+    @Min(1)
+    @Max(500)
+    private Integer quantity;
+
+    @JsonIgnore
+    @AssertTrue(message = "must transfer between two different warehouses")
+    public boolean isBetweenDifferentWarehouses() {
+        return fromWarehouseId == null || !fromWarehouseId.equals(toWarehouseId);
+    }
+}
@@ -0,0 +1,26 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseDTO {
+
+    private Long id;
+
+    @NotNull
+    @Size(min = 1, max = 50)
+    private String code;
+
+    @NotNull
+    @Size(min = 1, max = 200)
+    private String name;
+}
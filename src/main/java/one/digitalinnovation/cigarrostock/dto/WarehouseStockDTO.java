@@ -0,0 +1,19 @@
+package one.digitalinnovation.cigarrostock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseStockDTO {
+
+    private Long cigarroId;
+
+    private Long warehouseId;
+
+    private Integer quantity;
+}
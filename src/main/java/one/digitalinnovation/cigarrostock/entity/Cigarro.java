@@ -12,6 +12,8 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 
 @Data
 @Entity
@@ -20,7 +22,8 @@ import javax.persistence.Id;
 public class Cigarro {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cigarro_sequence")
+    @SequenceGenerator(name = "cigarro_sequence", sequenceName = "cigarro_sequence", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -39,5 +42,9 @@ public class Cigarro {
     @Column(nullable = false)
     private CigarroType type;
 
+    @Column(name = "reorder_threshold")
+    private Integer reorderThreshold;
 
+    @Version
+    private Long version;
 }
@@ -0,0 +1,51 @@
+package one.digitalinnovation.cigarrostock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * One entry of the append-only stock journal. Rows are only ever inserted, in the same transaction
+ * that changes {@link Cigarro#getQuantity()}, and positioned by the {@link Cigarro#getVersion()} that
+ * change produced: unlike the id, it follows the order in which the changes of a cigarro commit.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "stock_movement")
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_movement_sequence")
+    @SequenceGenerator(name = "stock_movement_sequence", sequenceName = "stock_movement_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "cigarro_id", nullable = false, updatable = false)
+    private Long cigarroId;
+
+    @Column(name = "cigarro_version", nullable = false, updatable = false)
+    private Long cigarroVersion;
+
+    @Column(nullable = false, updatable = false)
+    private int quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private StockMovementType type;
+
+    @Column(name = "moved_at", nullable = false, updatable = false)
+    private Instant movedAt;
+}
@@ -0,0 +1,42 @@
+package one.digitalinnovation.cigarrostock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Stock of a cigarro once every journal entry up to {@code cigarroVersion} is replayed.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "stock_snapshot")
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_snapshot_sequence")
+    @SequenceGenerator(name = "stock_snapshot_sequence", sequenceName = "stock_snapshot_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "cigarro_id", nullable = false, updatable = false)
+    private Long cigarroId;
+
+    @Column(name = "cigarro_version", nullable = false, updatable = false)
+    private Long cigarroVersion;
+
+    @Column(nullable = false, updatable = false)
+    private long quantity;
+
+    @Column(name = "taken_at", nullable = false, updatable = false)
+    private Instant takenAt;
+}
@@ -0,0 +1,42 @@
+package one.digitalinnovation.cigarrostock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Stock of one cigarro at one warehouse, independent from the catalogue-wide {@link Cigarro#getQuantity()}.
+ * Each (cigarro, warehouse) pair has its own row, only ever changed through conditional updates, so movements
+ * at one warehouse never wait on another one.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "warehouse_stock", uniqueConstraints = @UniqueConstraint(name = "uk_warehouse_stock_cigarro_warehouse",
+        columnNames = {"cigarro_id", "warehouse_id"}))
+public class WarehouseStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "warehouse_stock_sequence")
+    @SequenceGenerator(name = "warehouse_stock_sequence", sequenceName = "warehouse_stock_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "cigarro_id", nullable = false, updatable = false)
+    private Long cigarroId;
+
+    @Column(name = "warehouse_id", nullable = false, updatable = false)
+    private Long warehouseId;
+
+    @Column(nullable = false)
+    private int quantity;
+}
@@ -0,0 +1,28 @@
+package one.digitalinnovation.cigarrostock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Last write-behind log segment whose increments are applied to the Cigarro table. It is written in the same
+ * transaction as those increments, so segments up to it are never replayed after a crash.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "write_behind_checkpoint")
+public class WriteBehindCheckpoint {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long segment;
+}
@@ -0,0 +1,15 @@
+package one.digitalinnovation.cigarrostock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum CigarroChangeType {
+
+    CREATED("Cigarro created"),
+    UPDATED("Stock or reorder threshold changed"),
+    DELETED("Cigarro deleted");
+
+    private final String description;
+}
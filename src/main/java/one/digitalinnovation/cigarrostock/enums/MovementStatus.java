@@ -0,0 +1,16 @@
+package one.digitalinnovation.cigarrostock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum MovementStatus {
+
+    APPLIED("Applied"),
+    NOT_FOUND("Cigarro not found"),
+    STOCK_EXCEEDED("Exceeds the max stock capacity"),
+    INSUFFICIENT_STOCK("Not enough stock");
+
+    private final String description;
+}
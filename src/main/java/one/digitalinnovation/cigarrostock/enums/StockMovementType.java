@@ -0,0 +1,17 @@
+package one.digitalinnovation.cigarrostock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockMovementType {
+
+    CREATION("Initial stock"),
+    INCREMENT("Increment"),
+    DECREMENT("Decrement"),
+    MOVEMENT("Batch movement"),
+    RESERVATION("Committed reservation");
+
+    private final String description;
+}
@@ -0,0 +1,17 @@
+package one.digitalinnovation.cigarrostock.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class CigarroDeletedEvent extends ApplicationEvent {
+
+    private final Long cigarroId;
+    private final String name;
+
+    public CigarroDeletedEvent(Object source, Long cigarroId, String name) {
+        super(source);
+        this.cigarroId = cigarroId;
+        this.name = name;
+    }
+}
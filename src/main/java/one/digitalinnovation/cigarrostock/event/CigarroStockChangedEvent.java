@@ -0,0 +1,37 @@
+package one.digitalinnovation.cigarrostock.event;
+
+import lombok.Getter;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by every stock mutation, once per cigarro touched. {@code quantityBefore} is null when there is
+ * no previous stock to compare with, as on creation or when the reorder threshold itself changed, and
+ * {@code movementType} is null when the stock did not move at all. {@code version} is the one of the cigarro once
+ * the change is stored, ordering the changes of a cigarro.
+ */
+@Getter
+public class CigarroStockChangedEvent extends ApplicationEvent {
+
+    private final Long cigarroId;
+    private final String name;
+    private final String brand;
+    private final StockMovementType movementType;
+    private final Integer quantityBefore;
+    private final int quantity;
+    private final Integer reorderThreshold;
+    private final Long version;
+
+    public CigarroStockChangedEvent(Object source, Long cigarroId, String name, String brand, StockMovementType movementType,
+                                    Integer quantityBefore, int quantity, Integer reorderThreshold, Long version) {
+        super(source);
+        this.cigarroId = cigarroId;
+        this.name = name;
+        this.brand = brand;
+        this.movementType = movementType;
+        this.quantityBefore = quantityBefore;
+        this.quantity = quantity;
+        this.reorderThreshold = reorderThreshold;
+        this.version = version;
+    }
+}
@@ -0,0 +1,16 @@
+package one.digitalinnovation.cigarrostock.event;
+
+import lombok.Getter;
+import one.digitalinnovation.cigarrostock.dto.LowStockAlertDTO;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class LowStockEvent extends ApplicationEvent {
+
+    private final LowStockAlertDTO alert;
+
+    public LowStockEvent(Object source, LowStockAlertDTO alert) {
+        super(source);
+        this.alert = alert;
+    }
+}
@@ -0,0 +1,22 @@
+package one.digitalinnovation.cigarrostock.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class WarehouseStockChangedEvent extends ApplicationEvent {
+
+    private final Long cigarroId;
+    private final Long warehouseId;
+    /**
+     * Units added to the warehouse, negative when removed.
+     */
+    private final int quantity;
+
+    public WarehouseStockChangedEvent(Object source, Long cigarroId, Long warehouseId, int quantity) {
+        super(source);
+        this.cigarroId = cigarroId;
+        this.warehouseId = warehouseId;
+        this.quantity = quantity;
+    }
+}
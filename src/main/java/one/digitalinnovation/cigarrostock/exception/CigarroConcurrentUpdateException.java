@@ -0,0 +1,12 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CigarroConcurrentUpdateException extends Exception {
+
+    public CigarroConcurrentUpdateException() {
+        super("Cigarros informed kept being updated concurrently, please try again.");
+    }
+}
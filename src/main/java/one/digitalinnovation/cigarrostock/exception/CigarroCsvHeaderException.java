@@ -0,0 +1,14 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CigarroCsvHeaderException extends Exception {
+
+    public CigarroCsvHeaderException(List<String> missingColumns) {
+        super(String.format("CSV header is missing the required columns: %s", String.join(", ", missingColumns)));
+    }
+}
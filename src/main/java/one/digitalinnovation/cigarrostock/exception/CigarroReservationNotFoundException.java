@@ -0,0 +1,14 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class CigarroReservationNotFoundException extends Exception {
+
+    public CigarroReservationNotFoundException(UUID reservationId) {
+        super(String.format("Reservation with id %s not found or already expired.", reservationId));
+    }
+}
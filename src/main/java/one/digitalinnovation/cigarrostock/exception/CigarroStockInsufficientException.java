@@ -0,0 +1,12 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CigarroStockInsufficientException extends Exception {
+
+    public CigarroStockInsufficientException(Long id, int quantityToDecrement) {
+        super(String.format("Cigarros with %s ID to decrement informed exceeds the available stock: %s", id, quantityToDecrement));
+    }
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class CigarroVersionMismatchException extends Exception {
+
+    public CigarroVersionMismatchException(Long id, Long expectedVersion) {
+        super(String.format("Cigarro with id %s is no longer at version %s.", id, expectedVersion));
+    }
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class WarehouseAlreadyRegisteredException extends Exception {
+
+    public WarehouseAlreadyRegisteredException(String code) {
+        super(String.format("Warehouse with code %s already registered in the system.", code));
+    }
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.cigarrostock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class WarehouseNotFoundException extends Exception {
+
+    public WarehouseNotFoundException(Long id) {
+        super(String.format("Warehouse with id %s not found in the system.", id));
+    }
+}
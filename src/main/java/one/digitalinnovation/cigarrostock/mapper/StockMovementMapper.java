@@ -0,0 +1,14 @@
+package one.digitalinnovation.cigarrostock.mapper;
+
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
+import one.digitalinnovation.cigarrostock.entity.StockMovement;
+import org.mapstruct.Mapper;
+import org.mapstruct.factory.Mappers;
+
+@Mapper
+public interface StockMovementMapper {
+
+    StockMovementMapper INSTANCE = Mappers.getMapper(StockMovementMapper.class);
+
+    StockMovementDTO toDTO(StockMovement stockMovement);
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.cigarrostock.mapper;
+
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.entity.Warehouse;
+import one.digitalinnovation.cigarrostock.entity.WarehouseStock;
+import org.mapstruct.Mapper;
+import org.mapstruct.factory.Mappers;
+
+@Mapper
+public interface WarehouseMapper {
+
+    WarehouseMapper INSTANCE = Mappers.getMapper(WarehouseMapper.class);
+
+    Warehouse toModel(WarehouseDTO warehouseDTO);
+
+    WarehouseDTO toDTO(Warehouse warehouse);
+
+    WarehouseStockDTO toDTO(WarehouseStock warehouseStock);
+}
@@ -1,11 +1,119 @@
 package one.digitalinnovation.cigarrostock.repository;
 
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
 import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface CigarroRepository extends JpaRepository<Cigarro, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface CigarroRepository extends JpaRepository<Cigarro, Long>, JpaSpecificationExecutor<Cigarro> {
 
     Optional<Cigarro> findByName(String name);
+
+    /**
+     * Reads straight into the DTO: no managed entity is created, so there is nothing to map or dirty check.
+     */
+    @Query("select new one.digitalinnovation.cigarrostock.dto.CigarroDTO(c.id, c.name, c.brand, c.max, c.quantity, c.type, c.reorderThreshold, c.version) " +
+            "from Cigarro c where c.name = :name")
+    Optional<CigarroDTO> findDTOByName(@Param("name") String name);
+
+    @Query("select new one.digitalinnovation.cigarrostock.dto.CigarroDTO(c.id, c.name, c.brand, c.max, c.quantity, c.type, c.reorderThreshold, c.version) " +
+            "from Cigarro c")
+    List<CigarroDTO> findAllDTOs();
+
+    List<Cigarro> findByNameIn(Collection<String> names);
+
+    /**
+     * Runs in a transaction of its own, so it can still tell which names are registered once an insert of the current
+     * transaction failed.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    @Query("select c.name from Cigarro c where c.name in :names")
+    List<String> findRegisteredNames(@Param("names") Collection<String> names);
+
+    @Query("select new one.digitalinnovation.cigarrostock.dto.StockSummaryDTO(c.type, count(c), sum(c.quantity), sum(c.max)) " +
+            "from Cigarro c group by c.type order by c.type")
+    List<StockSummaryDTO> summarizeByType();
+
+    @Query("select new one.digitalinnovation.cigarrostock.dto.StockSummaryDTO(c.brand, count(c), sum(c.quantity), sum(c.max)) " +
+            "from Cigarro c group by c.brand order by c.brand")
+    List<StockSummaryDTO> summarizeByBrand();
+
+    /**
+     * Cigarros filled to at least the given percentage of their max capacity, fullest first; cigarros without capacity are left out.
+     */
+    @Query("select new one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO(c.id, c.name, c.brand, c.quantity, c.max) " +
+            "from Cigarro c where c.max > 0 and c.quantity * 100 >= :percent * c.max order by c.quantity * 1.0 / c.max desc, c.id")
+    List<CigarroCapacityDTO> findFilledAtLeast(@Param("percent") int percent, Pageable pageable);
+
+    List<Cigarro> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    /**
+     * Streams the whole catalogue in id order through a JDBC cursor; must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select c from Cigarro c order by c.id")
+    Stream<Cigarro> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO(c.id, c.name, c.brand) from Cigarro c")
+    Stream<CigarroSearchResultDTO> streamSearchEntries();
+
+    /**
+     * Atomically adds the given quantity to the stock, only if the result stays within the max capacity.
+     *
+     * @return the number of updated rows: 1 when applied, 0 when the cigarro is missing or the max would be exceeded
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Cigarro c set c.quantity = c.quantity + :quantity, c.version = c.version + 1 " +
+            "where c.id = :id and c.quantity + :quantity <= c.max")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Same as {@link #incrementQuantity(Long, int)}, also requiring the cigarro to still be at the given version and
+     * leaving room for the given units, acknowledged by the write-behind buffer but not stored yet.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Cigarro c set c.quantity = c.quantity + :quantity, c.version = c.version + 1 " +
+            "where c.id = :id and c.version = :version and c.quantity + :quantity + :buffered <= c.max")
+    int incrementQuantityIfVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("buffered") int buffered, @Param("version") Long version);
+
+    /**
+     * Atomically removes the given quantity from the stock, only if the units left still cover the reserved ones.
+     *
+     * @return the number of updated rows: 1 when applied, 0 when the cigarro is missing or the stock is insufficient
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Cigarro c set c.quantity = c.quantity - :quantity, c.version = c.version + 1 " +
+            "where c.id = :id and c.quantity - :quantity >= :reserved")
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity, @Param("reserved") int reserved);
+
+    /**
+     * Same as {@link #decrementQuantity(Long, int, int)}, also requiring the cigarro to still be at the given version.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Cigarro c set c.quantity = c.quantity - :quantity, c.version = c.version + 1 " +
+            "where c.id = :id and c.version = :version and c.quantity - :quantity >= :reserved")
+    int decrementQuantityIfVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("reserved") int reserved, @Param("version") Long version);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Cigarro c set c.reorderThreshold = :reorderThreshold, c.version = c.version + 1 where c.id = :id")
+    int updateReorderThreshold(@Param("id") Long id, @Param("reorderThreshold") Integer reorderThreshold);
 }
@@ -0,0 +1,38 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filters on brand, type and quantity range. Only the informed criteria become predicates, so each combination
+ * lines up with the leading columns of one of the composite indexes the cigarro schema migration creates.
+ */
+public final class CigarroSpecifications {
+
+    private CigarroSpecifications() {
+    }
+
+    public static Specification<Cigarro> matching(CigarroFilterDTO filter) {
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getBrand() != null) {
+                predicates.add(builder.equal(root.get("brand"), filter.getBrand()));
+            }
+            if (filter.getType() != null) {
+                predicates.add(builder.equal(root.get("type"), filter.getType()));
+            }
+            if (filter.getMinQuantity() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("quantity"), filter.getMinQuantity()));
+            }
+            if (filter.getMaxQuantity() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("quantity"), filter.getMaxQuantity()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.entity.StockMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    List<StockMovement> findByCigarroIdAndMovedAtBetweenOrderByMovedAtAscIdAsc(Long cigarroId, Instant from, Instant to, Pageable pageable);
+
+    @Query("select coalesce(sum(m.quantity), 0) from StockMovement m where m.cigarroId = :cigarroId and m.cigarroVersion > :afterVersion")
+    long sumQuantityAfter(@Param("cigarroId") Long cigarroId, @Param("afterVersion") Long afterVersion);
+
+    /**
+     * Journal entries not yet covered by a snapshot, summed per cigarro, for cigarros with at least the given number of them.
+     * A change still in flight always ends up with a higher cigarro version than the committed ones read here, so the
+     * returned version is a safe watermark for the next snapshot.
+     */
+    @Query("select m.cigarroId as cigarroId, max(m.cigarroVersion) as cigarroVersion, sum(m.quantity) as quantity from StockMovement m " +
+            "where m.cigarroVersion > coalesce((select max(s.cigarroVersion) from StockSnapshot s where s.cigarroId = m.cigarroId), -1) " +
+            "group by m.cigarroId having count(m) >= :minMovements")
+    List<Tail> findTails(@Param("minMovements") long minMovements);
+
+    interface Tail {
+
+        Long getCigarroId();
+
+        Long getCigarroVersion();
+
+        Long getQuantity();
+    }
+}
@@ -0,0 +1,11 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    Optional<StockSnapshot> findFirstByCigarroIdOrderByCigarroVersionDesc(Long cigarroId);
+}
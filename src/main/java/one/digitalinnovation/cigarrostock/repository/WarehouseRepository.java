@@ -0,0 +1,7 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.entity.Warehouse;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
+}
@@ -0,0 +1,41 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.entity.WarehouseStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface WarehouseStockRepository extends JpaRepository<WarehouseStock, Long> {
+
+    boolean existsByCigarroIdAndWarehouseId(Long cigarroId, Long warehouseId);
+
+    Optional<WarehouseStock> findByCigarroIdAndWarehouseId(Long cigarroId, Long warehouseId);
+
+    List<WarehouseStock> findByCigarroIdOrderByWarehouseId(Long cigarroId);
+
+    /**
+     * Atomically adds the given quantity, negative to remove units, to the stock of a cigarro at a warehouse, only if
+     * the result stays between zero and the cigarro max capacity. Only the row of that warehouse is locked.
+     *
+     * @return the number of updated rows: 1 when applied, 0 when the row is missing or the result would be out of bounds
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update WarehouseStock s set s.quantity = s.quantity + :quantity " +
+            "where s.cigarroId = :cigarroId and s.warehouseId = :warehouseId and s.quantity + :quantity >= 0 " +
+            "and s.quantity + :quantity <= (select c.max from Cigarro c where c.id = :cigarroId)")
+    int addQuantity(@Param("cigarroId") Long cigarroId, @Param("warehouseId") Long warehouseId, @Param("quantity") int quantity);
+
+    @Query("select s.cigarroId as cigarroId, sum(s.quantity) as quantity from WarehouseStock s group by s.cigarroId")
+    List<Total> sumQuantityByCigarro();
+
+    interface Total {
+
+        Long getCigarroId();
+
+        long getQuantity();
+    }
+}
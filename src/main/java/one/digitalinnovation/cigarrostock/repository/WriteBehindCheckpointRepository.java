@@ -0,0 +1,7 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.entity.WriteBehindCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WriteBehindCheckpointRepository extends JpaRepository<WriteBehindCheckpoint, Integer> {
+}
@@ -0,0 +1,390 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportErrorDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportResultDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroCsvHeaderException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * CSV import and export of the catalogue, streamed in both directions. The export writes each cigarro as it comes
+ * out of the database cursor; the import reads one record at a time, validates it against the {@link CigarroDTO}
+ * constraints and inserts the valid ones in batches, each in its own transaction. A rejected record is reported with
+ * the number of the line it starts on and does not stop the import.
+ */
+@Service
+public class CigarroCsvService {
+
+    private static final String ID_COLUMN = "id";
+    private static final String NAME_COLUMN = "name";
+    private static final String BRAND_COLUMN = "brand";
+    private static final String MAX_COLUMN = "max";
+    private static final String QUANTITY_COLUMN = "quantity";
+    private static final String TYPE_COLUMN = "type";
+    private static final String REORDER_THRESHOLD_COLUMN = "reorderThreshold";
+    private static final List<String> EXPORTED_COLUMNS = Arrays.asList(ID_COLUMN, NAME_COLUMN, BRAND_COLUMN, MAX_COLUMN,
+            QUANTITY_COLUMN, TYPE_COLUMN, REORDER_THRESHOLD_COLUMN);
+    private static final List<String> REQUIRED_COLUMNS = Arrays.asList(NAME_COLUMN, BRAND_COLUMN, MAX_COLUMN,
+            QUANTITY_COLUMN, TYPE_COLUMN);
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    private static final char CARRIAGE_RETURN = '\r';
+    private static final char LINE_FEED = '\n';
+    private static final String LINE_SEPARATOR = "\n";
+
+    private final CigarroService cigarroService;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    @Autowired
+    public CigarroCsvService(CigarroService cigarroService,
+                             Validator validator,
+                             @Value("${cigarro.import.batch-size:500}") int batchSize,
+                             @Value("${cigarro.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.cigarroService = cigarroService;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Writes a header line followed by one line per cigarro, in id order. The output can be imported back as is.
+     */
+    public void exportCsv(Writer writer) throws IOException {
+        writeLine(writer, EXPORTED_COLUMNS);
+        try {
+            cigarroService.streamAll(cigarroDTO -> {
+                try {
+                    writeLine(writer, toFields(cigarroDTO));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Imports the cigarros of a CSV file whose header names the columns, in any order; unknown columns such as the
+     * exported id are ignored. Cigarros already registered, or repeated in the file, are rejected like invalid lines.
+     */
+    public CigarroImportResultDTO importCsv(Reader reader) throws IOException, CigarroCsvHeaderException {
+        RecordReader records = new RecordReader(reader);
+        List<String> header = parseHeader(records.next());
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.putIfAbsent(header.get(i), i);
+        }
+        Import cigarroImport = new Import();
+        String record;
+        while ((record = records.next()) != null) {
+            if (record.isEmpty()) {
+                continue;
+            }
+            try {
+                cigarroImport.add(records.lineNumber, toCigarroDTO(parseLine(record), header.size(), columns));
+            } catch (InvalidLineException e) {
+                cigarroImport.reject(records.lineNumber, e.getMessage());
+            }
+        }
+        cigarroImport.insertBatch();
+        return cigarroImport.toResult();
+    }
+
+    private List<String> parseHeader(String line) throws CigarroCsvHeaderException {
+        List<String> header = new ArrayList<>();
+        if (line != null) {
+            if (!line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+                line = line.substring(1);
+            }
+            try {
+                parseLine(line).forEach(column -> header.add(column.trim()));
+            } catch (InvalidLineException e) {
+                header.clear();
+            }
+        }
+        List<String> missingColumns = REQUIRED_COLUMNS.stream()
+                .filter(column -> !header.contains(column))
+                .collect(Collectors.toList());
+        if (!missingColumns.isEmpty()) {
+            throw new CigarroCsvHeaderException(missingColumns);
+        }
+        return header;
+    }
+
+    private CigarroDTO toCigarroDTO(List<String> fields, int headerSize, Map<String, Integer> columns) throws InvalidLineException {
+        if (fields.size() != headerSize) {
+            throw new InvalidLineException(String.format("expected %d fields but found %d", headerSize, fields.size()));
+        }
+        CigarroDTO cigarroDTO = CigarroDTO.builder()
+                .name(field(fields, columns, NAME_COLUMN))
+                .brand(field(fields, columns, BRAND_COLUMN))
+                .max(integerField(fields, columns, MAX_COLUMN))
+                .quantity(integerField(fields, columns, QUANTITY_COLUMN))
+                .type(typeField(fields, columns))
+                .reorderThreshold(integerField(fields, columns, REORDER_THRESHOLD_COLUMN))
+                .build();
+        Set<ConstraintViolation<CigarroDTO>> violations = validator.validate(cigarroDTO);
+        if (!violations.isEmpty()) {
+            throw new InvalidLineException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return cigarroDTO;
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private Integer integerField(List<String> fields, Map<String, Integer> columns, String column) throws InvalidLineException {
+        String value = field(fields, columns, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidLineException(column + ": must be a whole number");
+        }
+    }
+
+    private CigarroType typeField(List<String> fields, Map<String, Integer> columns) throws InvalidLineException {
+        String value = field(fields, columns, TYPE_COLUMN);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CigarroType.valueOf(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidLineException(TYPE_COLUMN + ": must be one of " + Arrays.toString(CigarroType.values()));
+        }
+    }
+
+    /**
+     * Splits a record on commas, honouring RFC 4180 quoting; the line breaks of a quoted field are part of its value.
+     */
+    static List<String> parseLine(String line) throws InvalidLineException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != QUOTE) {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    field.append(QUOTE);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new InvalidLineException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static List<String> toFields(CigarroDTO cigarroDTO) {
+        return Arrays.asList(String.valueOf(cigarroDTO.getId()),
+                cigarroDTO.getName(),
+                cigarroDTO.getBrand(),
+                String.valueOf(cigarroDTO.getMax()),
+                String.valueOf(cigarroDTO.getQuantity()),
+                cigarroDTO.getType().name(),
+                cigarroDTO.getReorderThreshold() == null ? "" : String.valueOf(cigarroDTO.getReorderThreshold()));
+    }
+
+    private static void writeLine(Writer writer, List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            writeField(writer, fields.get(i));
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private static void writeField(Writer writer, String field) throws IOException {
+        if (field.indexOf(SEPARATOR) < 0 && field.indexOf(QUOTE) < 0 && field.indexOf(LINE_FEED) < 0 && field.indexOf(CARRIAGE_RETURN) < 0) {
+            writer.write(field);
+            return;
+        }
+        writer.write(QUOTE);
+        writer.write(field.replace("\"", "\"\""));
+        writer.write(QUOTE);
+    }
+
+    /**
+     * Progress of one import: the batch of valid lines waiting to be inserted and the tally so far.
+     */
+    private final class Import {
+
+        private final Map<String, Long> batchLines = new LinkedHashMap<>();
+        private List<CigarroDTO> batch = new ArrayList<>();
+        private final List<CigarroImportErrorDTO> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        private void add(long lineNumber, CigarroDTO cigarroDTO) {
+            if (batchLines.putIfAbsent(cigarroDTO.getName(), lineNumber) != null) {
+                reject(lineNumber, new CigarroAlreadyRegisteredException(cigarroDTO.getName()).getMessage());
+                return;
+            }
+            batch.add(cigarroDTO);
+            if (batch.size() >= batchSize) {
+                insertBatch();
+            }
+        }
+
+        private void insertBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                Set<String> registeredNames = cigarroService.createUnregisteredCigarros(batch);
+                for (CigarroDTO cigarroDTO : batch) {
+                    if (registeredNames.contains(cigarroDTO.getName())) {
+                        reject(batchLines.get(cigarroDTO.getName()), new CigarroAlreadyRegisteredException(cigarroDTO.getName()).getMessage());
+                    } else {
+                        imported++;
+                    }
+                }
+            } catch (CigarroAlreadyRegisteredException e) {
+                // a concurrent creation took one of the names: insert one by one so only the clashing lines are rejected
+                for (CigarroDTO cigarroDTO : batch) {
+                    try {
+                        cigarroService.createCigarro(cigarroDTO);
+                        imported++;
+                    } catch (CigarroAlreadyRegisteredException alreadyRegistered) {
+                        reject(batchLines.get(cigarroDTO.getName()), alreadyRegistered.getMessage());
+                    }
+                }
+            }
+            batch = new ArrayList<>(batchSize);
+            batchLines.clear();
+        }
+
+        private void reject(long lineNumber, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new CigarroImportErrorDTO(lineNumber, message));
+            }
+        }
+
+        private CigarroImportResultDTO toResult() {
+            errors.sort((first, second) -> Long.compare(first.getLine(), second.getLine()));
+            return new CigarroImportResultDTO(imported, rejected, errors);
+        }
+    }
+
+    /**
+     * Reads the CSV records one at a time. Outside quotes a record ends at a line break, CRLF, LF or CR; inside them the
+     * line breaks are kept as they are, so a quoted field may span lines.
+     */
+    private static final class RecordReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private long nextLineNumber = 1;
+        private long lineNumber;
+
+        private RecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return the next record, without its line break, or null at the end of the input
+         */
+        private String next() throws IOException {
+            lineNumber = nextLineNumber;
+            StringBuilder record = new StringBuilder();
+            boolean quoted = false;
+            int c;
+            while ((c = read()) != -1) {
+                if (c == QUOTE) {
+                    quoted = !quoted;
+                } else if (c == LINE_FEED || c == CARRIAGE_RETURN) {
+                    if (c == CARRIAGE_RETURN && peek() == LINE_FEED) {
+                        c = read();
+                        if (quoted) {
+                            record.append(CARRIAGE_RETURN);
+                        }
+                    }
+                    nextLineNumber++;
+                    if (!quoted) {
+                        return record.toString();
+                    }
+                }
+                record.append((char) c);
+            }
+            return record.length() == 0 ? null : record.toString();
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (position == limit) {
+                limit = Math.max(reader.read(buffer), 0);
+                position = 0;
+                if (limit == 0) {
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+    }
+
+    static final class InvalidLineException extends Exception {
+
+        InvalidLineException(String message) {
+            super(message);
+        }
+    }
+}
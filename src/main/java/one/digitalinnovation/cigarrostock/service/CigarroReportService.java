@@ -0,0 +1,37 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Stock reports aggregated by the database: only one row per group, or per matching cigarro, is read back.
+ */
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class CigarroReportService {
+
+    private final CigarroRepository cigarroRepository;
+
+    @Transactional(readOnly = true)
+    public List<StockSummaryDTO> summarizeByType() {
+        return cigarroRepository.summarizeByType();
+    }
+
+    @Transactional(readOnly = true)
+    public List<StockSummaryDTO> summarizeByBrand() {
+        return cigarroRepository.summarizeByBrand();
+    }
+
+    @Transactional(readOnly = true)
+    public List<CigarroCapacityDTO> findFilledAtLeast(int percent, int size) {
+        return cigarroRepository.findFilledAtLeast(percent, PageRequest.of(0, Math.min(size, CigarroService.MAX_PAGE_SIZE)));
+    }
+}
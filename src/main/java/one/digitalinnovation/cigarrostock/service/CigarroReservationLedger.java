@@ -0,0 +1,159 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory ledger of short-lived stock holds. Holds never touch the Cigarro table: each SKU keeps a
+ * reserved counter updated with compare-and-set, so releasing never blocks.
+ * <p>
+ * Holding and taking stock out both check the stock against the units reserved, so they are serialized per SKU
+ * by a striped lock kept until the transaction taking stock out completes: a hold then always sees the stock left
+ * by a sale committing meanwhile, and a sale always sees the holds made before it.
+ */
+@Component
+public class CigarroReservationLedger {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ConcurrentMap<Long, AtomicInteger> reservedByCigarro = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Duration holdDuration;
+    private final Clock clock;
+
+    @Autowired
+    public CigarroReservationLedger(@Value("${cigarro.reservation.hold-seconds:5}") long holdSeconds) {
+        this(Duration.ofSeconds(holdSeconds), Clock.systemUTC());
+    }
+
+    CigarroReservationLedger(Duration holdDuration, Clock clock) {
+        this.holdDuration = holdDuration;
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Keeps the reservations of a cigarro from changing until the current transaction completes. Must be called
+     * before reading its stock to hold units, and before reading its reserved units to take stock out.
+     */
+    public void lockUntilCompletion(Long cigarroId) {
+        lockUntilCompletion(stripes[stripeOf(cigarroId)]);
+    }
+
+    /**
+     * Same as {@link #lockUntilCompletion(Long)} for several cigarros, locked in a fixed order so that two
+     * transactions locking some of the same cigarros cannot deadlock.
+     */
+    public void lockUntilCompletion(Collection<Long> cigarroIds) {
+        cigarroIds.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .forEach(stripe -> lockUntilCompletion(stripes[stripe]));
+    }
+
+    /**
+     * Holds the given quantity if the units already reserved plus the new ones still fit in the stock.
+     */
+    public Optional<Reservation> hold(Long cigarroId, int quantity, int stock) {
+        AtomicInteger reserved = reservedByCigarro.computeIfAbsent(cigarroId, id -> new AtomicInteger());
+        int current;
+        do {
+            current = reserved.get();
+            if (current + quantity > stock) {
+                return Optional.empty();
+            }
+        } while (!reserved.compareAndSet(current, current + quantity));
+
+        Reservation reservation = new Reservation(UUID.randomUUID(), cigarroId, quantity, clock.instant().plus(holdDuration));
+        reservations.put(reservation.getId(), reservation);
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Removes the reservation and gives its units back, returning it only if it was still active.
+     */
+    public Optional<Reservation> release(UUID reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return Optional.empty();
+        }
+        reservedByCigarro.get(reservation.getCigarroId()).addAndGet(-reservation.getQuantity());
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Releases a reservation being turned into a sale, keeping the reservations of its cigarro locked until the sale
+     * completes so the released units cannot be held again before they are taken out of the stock.
+     */
+    public Optional<Reservation> commit(UUID reservationId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return Optional.empty();
+        }
+        lockUntilCompletion(reservation.getCigarroId());
+        return release(reservationId);
+    }
+
+    public int reservedQuantity(Long cigarroId) {
+        AtomicInteger reserved = reservedByCigarro.get(cigarroId);
+        return reserved == null ? 0 : reserved.get();
+    }
+
+    @Scheduled(fixedDelayString = "${cigarro.reservation.sweep-interval-ms:1000}")
+    public void releaseExpired() {
+        Instant now = clock.instant();
+        reservations.values().stream()
+                .filter(reservation -> reservation.getExpiresAt().isBefore(now))
+                .forEach(reservation -> release(reservation.getId()));
+    }
+
+    private int stripeOf(Long cigarroId) {
+        return (int) Math.floorMod(cigarroId, (long) STRIPES);
+    }
+
+    private static void lockUntilCompletion(ReentrantLock lock) {
+        if (lock.isHeldByCurrentThread()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Reservations can only be locked inside a transaction");
+        }
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Reservation {
+        private final UUID id;
+        private final Long cigarroId;
+        private final int quantity;
+        private final Instant expiresAt;
+    }
+}
@@ -0,0 +1,145 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over cigarro names and brands, for autocomplete. Keys are lower-cased and stripped of
+ * accents, and each one is suffixed with the cigarro id so a sorted map can hold several cigarros per key: the
+ * matches of a prefix are then the contiguous range of keys starting with it.
+ * <p>
+ * Whole names are looked up first, so "lucky s" finds "Lucky Strike", then every word of the name and brand.
+ * The index is loaded once the application is ready and kept in sync from committed creations and deletions.
+ */
+@Component
+public class CigarroSearchIndex {
+
+    private static final char ID_SEPARATOR = '\u0000';
+    private static final char HIGHEST_CHAR = '\uffff';
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final CigarroRepository cigarroRepository;
+    private final NavigableMap<String, CigarroSearchResultDTO> names = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, CigarroSearchResultDTO> words = new ConcurrentSkipListMap<>();
+    private final Map<Long, CigarroSearchResultDTO> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CigarroSearchIndex(CigarroRepository cigarroRepository) {
+        this.cigarroRepository = cigarroRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try (Stream<CigarroSearchResultDTO> cigarros = cigarroRepository.streamSearchEntries()) {
+            cigarros.forEach(this::add);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(CigarroStockChangedEvent event) {
+        if (event.getMovementType() == StockMovementType.CREATION) {
+            add(new CigarroSearchResultDTO(event.getCigarroId(), event.getName(), event.getBrand()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CigarroDeletedEvent event) {
+        remove(event.getCigarroId());
+    }
+
+    /**
+     * Returns up to {@code size} cigarros whose name, or a word of their name or brand, starts with the query.
+     */
+    public List<CigarroSearchResultDTO> search(String query, int size) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty() || size <= 0) {
+            return Collections.emptyList();
+        }
+        Map<Long, CigarroSearchResultDTO> results = new LinkedHashMap<>();
+        collect(names, prefix, size, results);
+        collect(words, prefix, size, results);
+        return new ArrayList<>(results.values());
+    }
+
+    synchronized void add(CigarroSearchResultDTO cigarro) {
+        remove(cigarro.getId());
+        entries.put(cigarro.getId(), cigarro);
+        names.put(key(normalize(cigarro.getName()), cigarro.getId()), cigarro);
+        for (String word : words(cigarro)) {
+            words.put(key(word, cigarro.getId()), cigarro);
+        }
+    }
+
+    synchronized void remove(Long id) {
+        CigarroSearchResultDTO cigarro = entries.remove(id);
+        if (cigarro == null) {
+            return;
+        }
+        names.remove(key(normalize(cigarro.getName()), id));
+        for (String word : words(cigarro)) {
+            words.remove(key(word, id));
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void collect(NavigableMap<String, CigarroSearchResultDTO> index, String prefix, int size,
+                         Map<Long, CigarroSearchResultDTO> results) {
+        for (CigarroSearchResultDTO cigarro : index.subMap(prefix, true, prefix + HIGHEST_CHAR, false).values()) {
+            if (results.size() >= size) {
+                return;
+            }
+            results.putIfAbsent(cigarro.getId(), cigarro);
+        }
+    }
+
+    private static List<String> words(CigarroSearchResultDTO cigarro) {
+        List<String> words = new ArrayList<>();
+        for (String text : new String[]{cigarro.getName(), cigarro.getBrand()}) {
+            for (String word : WORD_SEPARATORS.split(normalize(text))) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    private static String key(String term, Long id) {
+        return term + ID_SEPARATOR + id;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutDiacritics = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return withoutDiacritics.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+}
@@ -1,57 +1,251 @@
 package one.digitalinnovation.cigarrostock.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.cigarrostock.config.CacheConfig;
 import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
 import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
 import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
 import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroReservationNotFoundException;
 import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.CigarroVersionMismatchException;
 import one.digitalinnovation.cigarrostock.mapper.CigarroMapper;
 import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.CigarroSpecifications;
+import one.digitalinnovation.cigarrostock.service.CigarroReservationLedger.Reservation;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class CigarroService {
 
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final String OPERATIONS_METRIC = "cigarro.operations";
+    private static final String UNIQUE_NAME_CONSTRAINT = "uk_cigarro_name";
+
     private final CigarroRepository cigarroRepository;
+    private final CigarroReservationLedger reservationLedger;
+    private final OptimisticRetry optimisticRetry;
+    private final StockJournalService stockJournalService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final StockWriteBehindBuffer writeBehindBuffer;
+    private final CacheManager cacheManager;
     private final CigarroMapper cigarroMapper = CigarroMapper.INSTANCE;
 
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "create"}, histogram = true)
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional(rollbackFor = CigarroAlreadyRegisteredException.class)
     public CigarroDTO createCigarro(CigarroDTO cigarroDTO) throws CigarroAlreadyRegisteredException {
-        verifyIfIsAlreadyRegistered(cigarroDTO.getName());
+        Cigarro cigarro = toNewModel(cigarroDTO);
+        try {
+            Cigarro savedCigarro = cigarroRepository.saveAndFlush(cigarro);
+            recordMovement(savedCigarro, savedCigarro.getQuantity(), StockMovementType.CREATION);
+            return cigarroMapper.toDTO(savedCigarro);
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesUniqueName(e)) {
+                throw e;
+            }
+            throw new CigarroAlreadyRegisteredException(cigarroDTO.getName());
+        }
+    }
+
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "createBulk"}, histogram = true)
+    @Transactional(rollbackFor = CigarroAlreadyRegisteredException.class)
+    public List<CigarroDTO> createCigarros(List<CigarroDTO> cigarrosDTO) throws CigarroAlreadyRegisteredException {
+        List<String> names = cigarrosDTO.stream()
+                .map(CigarroDTO::getName)
+                .collect(Collectors.toList());
+        List<Cigarro> cigarros = cigarrosDTO.stream()
+                .map(this::toNewModel)
+                .collect(Collectors.toList());
+        try {
+            List<Cigarro> savedCigarros = cigarroRepository.saveAll(cigarros);
+            cigarroRepository.flush();
+            savedCigarros.forEach(savedCigarro -> recordMovement(savedCigarro, savedCigarro.getQuantity(), StockMovementType.CREATION));
+            return savedCigarros.stream()
+                    .map(cigarroMapper::toDTO)
+                    .collect(Collectors.toList());
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesUniqueName(e)) {
+                throw e;
+            }
+            throw new CigarroAlreadyRegisteredException(String.join(", ", duplicatedNames(names)));
+        }
+    }
+
+    /**
+     * Creates, in a single transaction, the given cigarros whose names are not registered yet; the names that
+     * already were are returned instead of failing the whole batch.
+     */
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "import"}, histogram = true)
+    @Transactional(rollbackFor = CigarroAlreadyRegisteredException.class)
+    public Set<String> createUnregisteredCigarros(List<CigarroDTO> cigarrosDTO) throws CigarroAlreadyRegisteredException {
+        List<String> names = cigarrosDTO.stream()
+                .map(CigarroDTO::getName)
+                .collect(Collectors.toList());
+        Set<String> registeredNames = cigarroRepository.findByNameIn(names)
+                .stream()
+                .map(Cigarro::getName)
+                .collect(Collectors.toSet());
+        List<Cigarro> cigarros = cigarrosDTO.stream()
+                .filter(cigarroDTO -> !registeredNames.contains(cigarroDTO.getName()))
+                .map(this::toNewModel)
+                .collect(Collectors.toList());
+        try {
+            List<Cigarro> savedCigarros = cigarroRepository.saveAll(cigarros);
+            cigarroRepository.flush();
+            savedCigarros.forEach(savedCigarro -> recordMovement(savedCigarro, savedCigarro.getQuantity(), StockMovementType.CREATION));
+            // open-in-view keeps one persistence context for the whole import request: without clearing it,
+            // every batch would flush again through all the cigarros inserted by the previous ones
+            entityManager.flush();
+            entityManager.clear();
+            return registeredNames;
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesUniqueName(e)) {
+                throw e;
+            }
+            throw new CigarroAlreadyRegisteredException(String.join(", ", duplicatedNames(names)));
+        }
+    }
+
+    private static boolean violatesUniqueName(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                return constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(UNIQUE_NAME_CONSTRAINT);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The names of a batch that failed on the unique name constraint which are either repeated in the batch or, by now,
+     * registered; all of them when the clashing cigarro was deleted meanwhile.
+     */
+    private Collection<String> duplicatedNames(List<String> names) {
+        Set<String> distinctNames = new HashSet<>();
+        Set<String> duplicatedNames = new TreeSet<>();
+        for (String name : names) {
+            if (!distinctNames.add(name)) {
+                duplicatedNames.add(name);
+            }
+        }
+        duplicatedNames.addAll(cigarroRepository.findRegisteredNames(distinctNames));
+        return duplicatedNames.isEmpty() ? names : duplicatedNames;
+    }
+
+    private Cigarro toNewModel(CigarroDTO cigarroDTO) {
         Cigarro cigarro = cigarroMapper.toModel(cigarroDTO);
-        Cigarro savedCigarro = cigarroRepository.save(cigarro);
-        return cigarroMapper.toDTO(savedCigarro);
+        cigarro.setId(null);
+        cigarro.setVersion(null);
+        return cigarro;
     }
 
+    /**
+     * Concurrent lookups of a name missing from the cache wait for a single query, run by the cache itself so a
+     * write of the same name waits for it too and is never overwritten by an older read. The transaction only
+     * starts inside the load, so the lookups waiting on it do not hold a connection each. The lookups that waited
+     * are counted by the cache in cigarro.cache.collapsed.
+     */
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "findByName"}, histogram = true)
+    @Cacheable(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#name", sync = true)
+    @Transactional(readOnly = true)
     public CigarroDTO findByName(String name) throws CigarroNotFoundException {
-        Cigarro foundCigarro = cigarroRepository.findByName(name)
+        return cigarroRepository.findDTOByName(name)
                 .orElseThrow(() -> new CigarroNotFoundException(name));
-        return cigarroMapper.toDTO(foundCigarro);
     }
 
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "listAll"}, histogram = true)
+    @Transactional(readOnly = true)
     public List<CigarroDTO> listAll() {
-        return cigarroRepository.findAll()
+        return cigarroRepository.findAllDTOs();
+    }
+
+    @Transactional(readOnly = true)
+    public Page<CigarroDTO> listAll(Pageable pageable) {
+        return cigarroRepository.findAll(pageable)
+                .map(cigarroMapper::toDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<CigarroDTO> filter(CigarroFilterDTO filter, Pageable pageable) {
+        return cigarroRepository.findAll(CigarroSpecifications.matching(filter), pageable)
+                .map(cigarroMapper::toDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CigarroDTO> listAfter(Long afterId, int size) {
+        return cigarroRepository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, Math.min(size, MAX_PAGE_SIZE)))
                 .stream()
                 .map(cigarroMapper::toDTO)
                 .collect(Collectors.toList());
     }
 
-    public void deleteById(Long id) throws CigarroNotFoundException {
-        verifyIfExists(id);
-        cigarroRepository.deleteById(id);
+    /**
+     * Hands every cigarro to the consumer one at a time, detaching each entity once mapped so the
+     * persistence context does not grow with the catalogue.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<CigarroDTO> consumer) {
+        try (Stream<Cigarro> cigarros = cigarroRepository.streamAll()) {
+            cigarros.forEach(cigarro -> {
+                consumer.accept(cigarroMapper.toDTO(cigarro));
+                entityManager.detach(cigarro);
+            });
+        }
     }
 
-    private void verifyIfIsAlreadyRegistered(String name) throws CigarroAlreadyRegisteredException {
-        Optional<Cigarro> optSavedCigarro = cigarroRepository.findByName(name);
-        if (optSavedCigarro.isPresent()) {
-            throw new CigarroAlreadyRegisteredException(name);
-        }
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "deleteById"}, histogram = true)
+    @CacheEvict(cacheNames = CacheConfig.CIGARROS_CACHE, allEntries = true)
+    public void deleteById(Long id) throws CigarroNotFoundException {
+        Cigarro cigarroToDelete = verifyIfExists(id);
+        cigarroRepository.deleteById(id);
+        eventPublisher.publishEvent(new CigarroDeletedEvent(this, id, cigarroToDelete.getName()));
     }
 
     private Cigarro verifyIfExists(Long id) throws CigarroNotFoundException {
@@ -59,14 +253,212 @@ public class CigarroService {
                 .orElseThrow(() -> new CigarroNotFoundException(id));
     }
 
+    /**
+     * In write-behind mode the increment is only acknowledged, so the cigarro returned has no version yet; its name is
+     * evicted rather than cached, and the next lookup reads the stored row, versioned, until the flush stores it.
+     */
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "increment"}, histogram = true)
+    @Caching(
+            put = @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name", unless = "#result.version == null"),
+            evict = @CacheEvict(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name", condition = "#result.version == null")
+    )
+    @Transactional
     public CigarroDTO increment(Long id, int quantityToIncrement) throws CigarroNotFoundException, CigarroStockExceededException {
-        Cigarro cigarroToIncrementStock = verifyIfExists(id);
-        int quantityAfterIncrement = quantityToIncrement + cigarroToIncrementStock.getQuantity();
-        if (quantityAfterIncrement <= cigarroToIncrementStock.getMax()) {
-            cigarroToIncrementStock.setQuantity(cigarroToIncrementStock.getQuantity() + quantityToIncrement);
-            Cigarro incrementedBeerStock = cigarroRepository.save(cigarroToIncrementStock);
-            return cigarroMapper.toDTO(incrementedBeerStock);
-        }
-        throw new CigarroStockExceededException(id, quantityToIncrement);
+        if (writeBehindBuffer.isEnabled()) {
+            if (!writeBehindBuffer.isTracked(id)) {
+                writeBehindBuffer.track(id, () -> cigarroRepository.findById(id).map(cigarroMapper::toDTO));
+            }
+            return writeBehindBuffer.add(id, quantityToIncrement);
+        }
+        int updatedRows = cigarroRepository.incrementQuantity(id, quantityToIncrement);
+        Cigarro incrementedCigarro = verifyIfExists(id);
+        if (updatedRows == 0) {
+            throw new CigarroStockExceededException(id, quantityToIncrement);
+        }
+        recordMovement(incrementedCigarro, quantityToIncrement, StockMovementType.INCREMENT);
+        return cigarroMapper.toDTO(incrementedCigarro);
+    }
+
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "increment"}, histogram = true)
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional
+    public CigarroDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws CigarroNotFoundException, CigarroStockExceededException, CigarroVersionMismatchException {
+        int bufferedQuantity = writeBehindBuffer.holdUntilCompletion(id);
+        int updatedRows = cigarroRepository.incrementQuantityIfVersion(id, quantityToIncrement, bufferedQuantity, expectedVersion);
+        Cigarro incrementedCigarro = verifyIfExists(id);
+        if (updatedRows == 0) {
+            verifyVersion(incrementedCigarro, expectedVersion);
+            throw new CigarroStockExceededException(id, quantityToIncrement);
+        }
+        recordMovement(incrementedCigarro, quantityToIncrement, StockMovementType.INCREMENT);
+        return cigarroMapper.toDTO(incrementedCigarro);
+    }
+
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "decrement"}, histogram = true)
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional
+    public CigarroDTO decrement(Long id, int quantityToDecrement) throws CigarroNotFoundException, CigarroStockInsufficientException {
+        return decrementAndRecord(id, quantityToDecrement, StockMovementType.DECREMENT);
+    }
+
+    private CigarroDTO decrementAndRecord(Long id, int quantityToDecrement, StockMovementType type) throws CigarroNotFoundException, CigarroStockInsufficientException {
+        reservationLedger.lockUntilCompletion(id);
+        int reservedQuantity = reservationLedger.reservedQuantity(id);
+        int updatedRows = cigarroRepository.decrementQuantity(id, quantityToDecrement, reservedQuantity);
+        Cigarro decrementedCigarro = verifyIfExists(id);
+        if (updatedRows == 0) {
+            throw new CigarroStockInsufficientException(id, quantityToDecrement);
+        }
+        recordMovement(decrementedCigarro, -quantityToDecrement, type);
+        return cigarroMapper.toDTO(decrementedCigarro);
+    }
+
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "decrement"}, histogram = true)
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional
+    public CigarroDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws CigarroNotFoundException, CigarroStockInsufficientException, CigarroVersionMismatchException {
+        reservationLedger.lockUntilCompletion(id);
+        int reservedQuantity = reservationLedger.reservedQuantity(id);
+        int updatedRows = cigarroRepository.decrementQuantityIfVersion(id, quantityToDecrement, reservedQuantity, expectedVersion);
+        Cigarro decrementedCigarro = verifyIfExists(id);
+        if (updatedRows == 0) {
+            verifyVersion(decrementedCigarro, expectedVersion);
+            throw new CigarroStockInsufficientException(id, quantityToDecrement);
+        }
+        recordMovement(decrementedCigarro, -quantityToDecrement, StockMovementType.DECREMENT);
+        return cigarroMapper.toDTO(decrementedCigarro);
+    }
+
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional
+    public CigarroDTO updateReorderThreshold(Long id, Integer reorderThreshold) throws CigarroNotFoundException {
+        cigarroRepository.updateReorderThreshold(id, reorderThreshold);
+        Cigarro updatedCigarro = verifyIfExists(id);
+        publishStockChange(updatedCigarro, null, null, updatedCigarro.getQuantity());
+        return cigarroMapper.toDTO(updatedCigarro);
+    }
+
+    /**
+     * Journals a stock change of the given cigarro, already holding its new quantity and version, and lets listeners react to it
+     * once the surrounding transaction commits.
+     */
+    private void recordMovement(Cigarro cigarro, int quantity, StockMovementType type) {
+        stockJournalService.record(cigarro.getId(), cigarro.getVersion(), quantity, type);
+        publishStockChange(cigarro, type, type == StockMovementType.CREATION ? null : cigarro.getQuantity() - quantity, cigarro.getQuantity());
+    }
+
+    private void publishStockChange(Cigarro cigarro, StockMovementType type, Integer quantityBefore, int quantity) {
+        eventPublisher.publishEvent(new CigarroStockChangedEvent(this, cigarro.getId(), cigarro.getName(), cigarro.getBrand(),
+                type, quantityBefore, quantity, cigarro.getReorderThreshold(), cigarro.getVersion()));
+    }
+
+    private void verifyVersion(Cigarro cigarro, Long expectedVersion) throws CigarroVersionMismatchException {
+        if (!cigarro.getVersion().equals(expectedVersion)) {
+            throw new CigarroVersionMismatchException(cigarro.getId(), expectedVersion);
+        }
+    }
+
+    public List<StockMovementDTO> findMovements(Long id, Instant from, Instant to, int size) throws CigarroNotFoundException {
+        verifyIfExists(id);
+        return stockJournalService.findMovements(id, from, to, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    @Transactional(readOnly = true)
+    public ReservationDTO reserve(Long id, int quantityToReserve) throws CigarroNotFoundException, CigarroStockInsufficientException {
+        reservationLedger.lockUntilCompletion(id);
+        Cigarro cigarroToReserve = verifyIfExists(id);
+        Reservation reservation = reservationLedger.hold(id, quantityToReserve, cigarroToReserve.getQuantity())
+                .orElseThrow(() -> new CigarroStockInsufficientException(id, quantityToReserve));
+        return toReservationDTO(reservation);
+    }
+
+    @CachePut(cacheNames = CacheConfig.CIGARROS_CACHE, key = "#result.name")
+    @Transactional
+    public CigarroDTO commitReservation(UUID reservationId) throws CigarroReservationNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException {
+        Reservation reservation = reservationLedger.commit(reservationId)
+                .orElseThrow(() -> new CigarroReservationNotFoundException(reservationId));
+        return decrementAndRecord(reservation.getCigarroId(), reservation.getQuantity(), StockMovementType.RESERVATION);
+    }
+
+    public void releaseReservation(UUID reservationId) throws CigarroReservationNotFoundException {
+        reservationLedger.release(reservationId)
+                .orElseThrow(() -> new CigarroReservationNotFoundException(reservationId));
+    }
+
+    private ReservationDTO toReservationDTO(Reservation reservation) {
+        return new ReservationDTO(reservation.getId(),
+                reservation.getCigarroId(),
+                reservation.getQuantity(),
+                reservation.getExpiresAt());
+    }
+
+    @Timed(value = OPERATIONS_METRIC, extraTags = {"operation", "applyMovements"}, histogram = true)
+    @CacheEvict(cacheNames = CacheConfig.CIGARROS_CACHE, allEntries = true)
+    public List<MovementResultDTO> applyMovements(List<MovementDTO> movements) throws CigarroConcurrentUpdateException {
+        return optimisticRetry.execute(() -> applyMovementsInTransaction(movements, StockMovementType.MOVEMENT, true));
+    }
+
+    /**
+     * Applies increments acknowledged by the write-behind buffer, coalesced per cigarro, inside the flush transaction.
+     * An increment that would now exceed the max, because of changes made meanwhile by another instance, is not applied.
+     * The cigarros changed are evicted from the cache once the flush commits, so their next lookup reads them back.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<MovementResultDTO> applyBufferedIncrements(Map<Long, Integer> increments) {
+        List<MovementDTO> movements = increments.entrySet().stream()
+                .map(increment -> new MovementDTO(increment.getKey(), increment.getValue()))
+                .collect(Collectors.toList());
+        List<MovementResultDTO> results = applyMovementsInTransaction(movements, StockMovementType.INCREMENT, false);
+        Cache cigarrosCache = new TransactionAwareCacheDecorator(cacheManager.getCache(CacheConfig.CIGARROS_CACHE));
+        results.stream()
+                .filter(result -> result.getStatus() == MovementStatus.APPLIED)
+                .map(result -> entityManager.find(Cigarro.class, result.getId()).getName())
+                .forEach(cigarrosCache::evict);
+        return results;
+    }
+
+    /**
+     * @param holdBuffered whether increments still buffered by the write-behind mode are held and counted against the
+     *                     max, as for synchronous movements; the flush of the buffer itself applies them instead
+     */
+    private List<MovementResultDTO> applyMovementsInTransaction(List<MovementDTO> movements, StockMovementType type, boolean holdBuffered) {
+        Set<Long> ids = movements.stream()
+                .map(MovementDTO::getId)
+                .collect(Collectors.toSet());
+        reservationLedger.lockUntilCompletion(ids);
+        Map<Long, Integer> bufferedQuantities = holdBuffered ? writeBehindBuffer.holdUntilCompletion(ids) : Collections.emptyMap();
+        Map<Long, Cigarro> cigarrosById = cigarroRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Cigarro::getId, Function.identity()));
+        List<MovementResultDTO> results = movements.stream()
+                .map(movement -> applyMovement(cigarrosById.get(movement.getId()), movement, bufferedQuantities.getOrDefault(movement.getId(), 0)))
+                .collect(Collectors.toList());
+        // the journal is positioned by the version each change produced, which is only bumped on flush
+        cigarroRepository.flush();
+        for (int i = 0; i < movements.size(); i++) {
+            MovementResultDTO result = results.get(i);
+            if (result.getStatus() == MovementStatus.APPLIED) {
+                MovementDTO movement = movements.get(i);
+                Cigarro cigarro = cigarrosById.get(movement.getId());
+                stockJournalService.record(cigarro.getId(), cigarro.getVersion(), movement.getQuantity(), type);
+                publishStockChange(cigarro, type, result.getQuantity() - movement.getQuantity(), result.getQuantity());
+            }
+        }
+        return results;
+    }
+
+    private MovementResultDTO applyMovement(Cigarro cigarro, MovementDTO movement, int bufferedQuantity) {
+        if (cigarro == null) {
+            return new MovementResultDTO(movement.getId(), null, MovementStatus.NOT_FOUND);
+        }
+        int quantityAfterMovement = cigarro.getQuantity() + movement.getQuantity();
+        if (movement.getQuantity() > 0 && quantityAfterMovement + bufferedQuantity > cigarro.getMax()) {
+            return new MovementResultDTO(cigarro.getId(), cigarro.getQuantity(), MovementStatus.STOCK_EXCEEDED);
+        }
+        if (quantityAfterMovement < reservationLedger.reservedQuantity(cigarro.getId())) {
+            return new MovementResultDTO(cigarro.getId(), cigarro.getQuantity(), MovementStatus.INSUFFICIENT_STOCK);
+        }
+        cigarro.setQuantity(quantityAfterMovement);
+        return new MovementResultDTO(cigarro.getId(), quantityAfterMovement, MovementStatus.APPLIED);
     }
 }
@@ -0,0 +1,37 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.cigarrostock.dto.LowStockAlertDTO;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.event.LowStockEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+
+/**
+ * Turns stock changes into low-stock alerts. Only committed changes are evaluated, and an alert is raised
+ * when the stock reaches the reorder threshold, not again for every movement while it stays below it.
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class LowStockEvaluator {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void evaluate(CigarroStockChangedEvent event) {
+        Integer reorderThreshold = event.getReorderThreshold();
+        if (reorderThreshold == null || event.getQuantity() > reorderThreshold) {
+            return;
+        }
+        Integer quantityBefore = event.getQuantityBefore();
+        if (quantityBefore != null && quantityBefore <= reorderThreshold) {
+            return;
+        }
+        LowStockAlertDTO alert = new LowStockAlertDTO(event.getCigarroId(), event.getName(), event.getQuantity(), reorderThreshold, Instant.now());
+        eventPublisher.publishEvent(new LowStockEvent(this, alert));
+    }
+}
@@ -0,0 +1,62 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs read-modify-write work in its own transaction, retrying with jittered exponential backoff
+ * when the {@code @Version} check fails at commit. No database lock is held between attempts.
+ */
+@Component
+public class OptimisticRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    @Autowired
+    public OptimisticRetry(PlatformTransactionManager transactionManager,
+                           @Value("${cigarro.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${cigarro.retry.initial-backoff-ms:10}") long initialBackoffMillis,
+                           @Value("${cigarro.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public <T> T execute(Supplier<T> work) throws CigarroConcurrentUpdateException {
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; attempt < maxAttempts; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                sleep(ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+            }
+        }
+        try {
+            return transactionTemplate.execute(status -> work.get());
+        } catch (OptimisticLockingFailureException e) {
+            throw new CigarroConcurrentUpdateException();
+        }
+    }
+
+    private void sleep(long millis) throws CigarroConcurrentUpdateException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CigarroConcurrentUpdateException();
+        }
+    }
+}
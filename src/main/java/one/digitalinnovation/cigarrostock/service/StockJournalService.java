@@ -0,0 +1,95 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
+import one.digitalinnovation.cigarrostock.entity.StockMovement;
+import one.digitalinnovation.cigarrostock.entity.StockSnapshot;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.mapper.StockMovementMapper;
+import one.digitalinnovation.cigarrostock.repository.StockMovementRepository;
+import one.digitalinnovation.cigarrostock.repository.StockMovementRepository.Tail;
+import one.digitalinnovation.cigarrostock.repository.StockSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only journal of every stock change. Entries are written inside the transaction that changes the
+ * quantity, so the journal never disagrees with the Cigarro table. Per-SKU snapshots are taken periodically,
+ * once enough entries piled up since the previous one, so rebuilding a stock only replays the tail.
+ */
+@Service
+public class StockJournalService {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final long snapshotEvery;
+    private final Clock clock;
+    private final StockMovementMapper stockMovementMapper = StockMovementMapper.INSTANCE;
+
+    @Autowired
+    public StockJournalService(StockMovementRepository stockMovementRepository,
+                               StockSnapshotRepository stockSnapshotRepository,
+                               @Value("${cigarro.journal.snapshot-every:100}") long snapshotEvery) {
+        this(stockMovementRepository, stockSnapshotRepository, snapshotEvery, Clock.systemUTC());
+    }
+
+    StockJournalService(StockMovementRepository stockMovementRepository,
+                        StockSnapshotRepository stockSnapshotRepository,
+                        long snapshotEvery,
+                        Clock clock) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.snapshotEvery = snapshotEvery;
+        this.clock = clock;
+    }
+
+    /**
+     * Appends a change of the given cigarro, made by the current transaction, at the version of the cigarro it produced.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long cigarroId, Long cigarroVersion, int quantity, StockMovementType type) {
+        stockMovementRepository.save(new StockMovement(null, cigarroId, cigarroVersion, quantity, type, clock.instant()));
+    }
+
+    @Transactional(readOnly = true)
+    public List<StockMovementDTO> findMovements(Long cigarroId, Instant from, Instant to, int size) {
+        return stockMovementRepository.findByCigarroIdAndMovedAtBetweenOrderByMovedAtAscIdAsc(cigarroId, from, to, PageRequest.of(0, size))
+                .stream()
+                .map(stockMovementMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuilds the stock of a cigarro from its latest snapshot plus the journal entries written after it.
+     */
+    @Transactional(readOnly = true)
+    public long replayQuantity(Long cigarroId) {
+        Optional<StockSnapshot> latestSnapshot = stockSnapshotRepository.findFirstByCigarroIdOrderByCigarroVersionDesc(cigarroId);
+        long snapshotQuantity = latestSnapshot.map(StockSnapshot::getQuantity).orElse(0L);
+        long snapshotVersion = latestSnapshot.map(StockSnapshot::getCigarroVersion).orElse(-1L);
+        return snapshotQuantity + stockMovementRepository.sumQuantityAfter(cigarroId, snapshotVersion);
+    }
+
+    @Scheduled(fixedDelayString = "${cigarro.journal.snapshot-interval-ms:60000}")
+    @Transactional
+    public void takeSnapshots() {
+        Instant now = clock.instant();
+        for (Tail tail : stockMovementRepository.findTails(snapshotEvery)) {
+            long snapshotQuantity = stockSnapshotRepository.findFirstByCigarroIdOrderByCigarroVersionDesc(tail.getCigarroId())
+                    .map(StockSnapshot::getQuantity)
+                    .orElse(0L);
+            stockSnapshotRepository.save(new StockSnapshot(null, tail.getCigarroId(), tail.getCigarroVersion(),
+                    snapshotQuantity + tail.getQuantity(), now));
+        }
+    }
+}
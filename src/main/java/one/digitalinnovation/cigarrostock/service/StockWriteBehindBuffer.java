@@ -0,0 +1,542 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Optional write-behind mode for increments. Each increment is validated against the max capacity using the
+ * last stored quantity plus the increments still pending, appended to a local write-ahead log and acknowledged
+ * without touching the database; the pending increments are then flushed, coalesced per cigarro, by
+ * {@link StockWriteBehindFlusher}.
+ * <p>
+ * The stored quantity follows every committed stock change, flushes and synchronous changes alike, keeping the one
+ * with the highest version. Synchronous increments {@link #holdUntilCompletion hold} the stripe of their cigarro
+ * until they complete and count the buffered units against the max too, so an acknowledged increment is not dropped
+ * by its flush because of a change made meanwhile by this instance.
+ * <p>
+ * Cigarros are spread over stripes, each with its own lock and log file, so concurrent increments of different
+ * cigarros rarely contend. A record is forced to disk before its increment is acknowledged and becomes pending,
+ * with concurrent appenders sharing the same force. Every flush starts a new log segment, numbered after the
+ * checkpoint and the segments left on disk; segments only ever hold increments not applied yet, and they are deleted
+ * once the flush committed.
+ */
+@Component
+public class StockWriteBehindBuffer {
+
+    private static final String DROPPED_METRIC = "cigarro.write-behind.dropped";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("(\\d+)-(\\d+)\\.wal");
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Stripe[] stripes;
+    private final Counter droppedUnits;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private long segment;
+    private volatile long oldestSegment;
+
+    @Autowired
+    public StockWriteBehindBuffer(MeterRegistry meterRegistry,
+                                  @Value("${cigarro.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${cigarro.write-behind.directory:data/write-behind}") String directory,
+                                  @Value("${cigarro.write-behind.stripes:8}") int stripes) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(i);
+        }
+        this.droppedUnits = meterRegistry.counter(DROPPED_METRIC);
+    }
+
+    /**
+     * Opens a new segment after the ones left by a previous run, which stay untouched until {@link #recover(long)}.
+     * Recovering moves on to a segment after the checkpoint when the directory was emptied past it.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Long> segments = existingSegments();
+        segment = segments.stream().mapToLong(Long::longValue).max().orElse(0L) + 1;
+        oldestSegment = segments.stream().mapToLong(Long::longValue).min().orElse(segment);
+        for (Stripe stripe : stripes) {
+            stripe.open(segment);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isTracked(Long id) {
+        return slots.containsKey(id);
+    }
+
+    /**
+     * Starts buffering increments of a cigarro, whose quantity and version are the ones currently stored.
+     */
+    public void track(CigarroDTO cigarro) {
+        slots.putIfAbsent(cigarro.getId(), new Slot(cigarro));
+    }
+
+    /**
+     * Same as {@link #track(CigarroDTO)}, reading the cigarro under its stripe lock: a synchronous change either has
+     * not been made yet, and will update the stored quantity once committed, or is already committed and read.
+     */
+    public void track(Long id, Supplier<Optional<CigarroDTO>> storedCigarro) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock.lock();
+        try {
+            if (!slots.containsKey(id)) {
+                storedCigarro.get().ifPresent(this::track);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps increments of the given cigarro from being acknowledged until the current transaction completes.
+     *
+     * @return the units acknowledged, or being acknowledged, but not stored yet
+     */
+    public int holdUntilCompletion(Long id) {
+        return holdUntilCompletion(Collections.singleton(id)).getOrDefault(id, 0);
+    }
+
+    /**
+     * Same as {@link #holdUntilCompletion(Long)} for several cigarros, their stripes being held in index order.
+     */
+    public Map<Long, Integer> holdUntilCompletion(Collection<Long> ids) {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+        ids.stream()
+                .map(this::stripeOf)
+                .distinct()
+                .sorted(Comparator.comparingInt(stripe -> stripe.index))
+                .forEach(stripe -> holdUntilCompletion(stripe.lock));
+        Map<Long, Integer> buffered = new HashMap<>();
+        for (Long id : ids) {
+            Slot slot = slots.get(id);
+            if (slot != null) {
+                buffered.put(id, slot.pending + slot.unforced);
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * Buffers an increment of a tracked cigarro once it is durable in the log.
+     *
+     * @return the cigarro with its quantity including every acknowledged increment, and no version since it is not stored yet
+     */
+    public CigarroDTO add(Long id, int quantity) throws CigarroNotFoundException, CigarroStockExceededException {
+        Stripe stripe = stripeOf(id);
+        Lock appending = stripe.appending.readLock();
+        appending.lock();
+        try {
+            Slot slot;
+            FileChannel channel;
+            long position;
+            int bufferedQuantity;
+            stripe.lock.lock();
+            try {
+                slot = slots.get(id);
+                if (slot == null) {
+                    // deleted since it was tracked
+                    throw new CigarroNotFoundException(id);
+                }
+                bufferedQuantity = slot.storedQuantity + slot.pending + slot.unforced + quantity;
+                if (bufferedQuantity > slot.cigarro.getMax()) {
+                    throw new CigarroStockExceededException(id, quantity);
+                }
+                channel = stripe.channel;
+                position = stripe.append(id, quantity);
+                slot.unforced += quantity;
+            } finally {
+                stripe.lock.unlock();
+            }
+            boolean forced = false;
+            try {
+                stripe.force(channel, position);
+                forced = true;
+            } finally {
+                stripe.lock.lock();
+                try {
+                    slot.unforced -= quantity;
+                    if (forced) {
+                        slot.pending += quantity;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return slot.toDTO(bufferedQuantity);
+        } finally {
+            appending.unlock();
+        }
+    }
+
+    /**
+     * Takes the pending increments, coalesced per cigarro, and starts a new segment for the ones to come.
+     * The increments stay pending, and counted against the max, until {@link #flushed} is called.
+     */
+    public Flush drain() {
+        lockAll();
+        try {
+            Map<Long, Integer> increments = new HashMap<>();
+            slots.forEach((id, slot) -> {
+                if (slot.pending != 0) {
+                    increments.put(id, slot.pending);
+                }
+            });
+            if (increments.isEmpty() && oldestSegment == segment) {
+                return new Flush(Collections.emptyMap(), -1);
+            }
+            long drainedSegment = segment++;
+            for (Stripe stripe : stripes) {
+                stripe.rotate(segment);
+            }
+            return new Flush(increments, drainedSegment);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Settles a committed flush: the increments are no longer pending, the stored quantities having already followed
+     * the flush through {@link #onStockChanged}, and the segments it covered are deleted. Increments that could not be
+     * applied are dropped.
+     */
+    public void flushed(Flush flush, List<MovementResultDTO> results) {
+        for (MovementResultDTO result : results) {
+            int quantity = flush.getIncrements().get(result.getId());
+            if (result.getStatus() != MovementStatus.APPLIED) {
+                droppedUnits.increment(quantity);
+            }
+            if (result.getStatus() == MovementStatus.NOT_FOUND) {
+                slots.remove(result.getId());
+                continue;
+            }
+            Slot slot = slots.get(result.getId());
+            if (slot == null) {
+                continue;
+            }
+            Stripe stripe = stripeOf(result.getId());
+            stripe.lock.lock();
+            try {
+                slot.pending -= quantity;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        deleteSegmentsUpTo(flush.getSegment());
+    }
+
+    /**
+     * Deletes the segments already applied and reads back the increments of the others, coalesced per cigarro.
+     * Must be called once, before any increment is buffered, the increments then being {@link #restore restored}.
+     */
+    public Map<Long, Integer> recover(long checkpoint) {
+        if (checkpoint >= segment) {
+            lockAll();
+            try {
+                segment = checkpoint + 1;
+                for (Stripe stripe : stripes) {
+                    stripe.rotate(segment);
+                }
+            } finally {
+                unlockAll();
+            }
+        }
+        deleteSegmentsUpTo(checkpoint);
+        Map<Long, Integer> increments = new HashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < segment) {
+                    readRecords(file, increments);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return increments;
+    }
+
+    /**
+     * Puts back an increment read from the log of a previous run, already acknowledged and therefore not validated.
+     */
+    public void restore(CigarroDTO cigarro, int quantity) {
+        track(cigarro);
+        Stripe stripe = stripeOf(cigarro.getId());
+        stripe.lock.lock();
+        try {
+            slots.get(cigarro.getId()).pending += quantity;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs before the stripe held by the transaction, if any, is released, so the next increment sees the change.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(CigarroStockChangedEvent event) {
+        Slot slot = slots.get(event.getCigarroId());
+        if (slot == null || event.getVersion() == null) {
+            return;
+        }
+        Stripe stripe = stripeOf(event.getCigarroId());
+        stripe.lock.lock();
+        try {
+            if (event.getVersion() >= slot.storedVersion) {
+                slot.storedQuantity = event.getQuantity();
+                slot.storedVersion = event.getVersion();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CigarroDeletedEvent event) {
+        slots.remove(event.getCigarroId());
+    }
+
+    private Stripe stripeOf(Long id) {
+        return stripes[(int) Math.floorMod(id, (long) stripes.length)];
+    }
+
+    /**
+     * Waits for the records being appended to be acknowledged or rejected, so none is left behind in a drained segment.
+     */
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.appending.writeLock().lock();
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].appending.writeLock().unlock();
+        }
+    }
+
+    private static void holdUntilCompletion(ReentrantLock lock) {
+        if (lock.isHeldByCurrentThread()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Buffered increments can only be held inside a transaction");
+        }
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> SEGMENT_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .forEach(matcher -> segments.add(Long.parseLong(matcher.group(1))));
+        }
+        return segments;
+    }
+
+    private synchronized void deleteSegmentsUpTo(long lastSegment) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) <= lastSegment) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        oldestSegment = Math.max(oldestSegment, lastSegment + 1);
+    }
+
+    /**
+     * Reads whole records only: a record torn by a crash was never acknowledged.
+     */
+    private void readRecords(Path file, Map<Long, Integer> increments) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (records.remaining() >= RECORD_SIZE) {
+            increments.merge(records.getLong(), records.getInt(), Integer::sum);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Flush {
+
+        private final Map<Long, Integer> increments;
+        private final long segment;
+
+        public boolean isEmpty() {
+            return increments.isEmpty() && segment < 0;
+        }
+    }
+
+    private static final class Slot {
+
+        private final CigarroDTO cigarro;
+        private int storedQuantity;
+        private long storedVersion;
+        private int pending;
+        private int unforced;
+
+        private Slot(CigarroDTO cigarro) {
+            this.cigarro = cigarro;
+            this.storedQuantity = cigarro.getQuantity();
+            this.storedVersion = cigarro.getVersion() == null ? -1 : cigarro.getVersion();
+        }
+
+        private CigarroDTO toDTO(int quantity) {
+            return new CigarroDTO(cigarro.getId(), cigarro.getName(), cigarro.getBrand(), cigarro.getMax(),
+                    quantity, cigarro.getType(), cigarro.getReorderThreshold(), null);
+        }
+    }
+
+    private final class Stripe {
+
+        private final int index;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ReadWriteLock appending = new ReentrantReadWriteLock();
+        private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        private final Object forceLock = new Object();
+        private FileChannel channel;
+        private FileChannel forcedChannel;
+        private long forcedPosition;
+
+        private Stripe(int index) {
+            this.index = index;
+        }
+
+        private void open(long segment) throws IOException {
+            channel = FileChannel.open(directory.resolve(segment + "-" + index + ".wal"),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        private long append(Long id, int quantity) {
+            record.clear();
+            record.putLong(id).putInt(quantity).flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                return channel.position();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Forces the log up to the given position, unless a concurrent force already covered it.
+         */
+        private void force(FileChannel appendedChannel, long position) {
+            synchronized (forceLock) {
+                if (appendedChannel == forcedChannel && position <= forcedPosition) {
+                    return;
+                }
+                try {
+                    long appendedPosition = appendedChannel.position();
+                    appendedChannel.force(false);
+                    forcedChannel = appendedChannel;
+                    forcedPosition = appendedPosition;
+                } catch (ClosedChannelException e) {
+                    // rotated away, and forced before being closed
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void rotate(long segment) {
+            try {
+                close();
+                open(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() throws IOException {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+}
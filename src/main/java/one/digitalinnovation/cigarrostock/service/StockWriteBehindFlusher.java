@@ -0,0 +1,91 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.entity.WriteBehindCheckpoint;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.mapper.CigarroMapper;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.WriteBehindCheckpointRepository;
+import one.digitalinnovation.cigarrostock.service.StockWriteBehindBuffer.Flush;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flushes the write-behind buffer: the pending increments are applied in a single transaction, retried on
+ * optimistic conflicts, which also moves the checkpoint to the drained log segment. On startup, the increments
+ * acknowledged but not flushed before the application stopped are read back from the log first.
+ */
+@Slf4j
+@Component
+public class StockWriteBehindFlusher implements SmartInitializingSingleton {
+
+    private static final int CHECKPOINT_ID = 1;
+
+    private final StockWriteBehindBuffer writeBehindBuffer;
+    private final CigarroService cigarroService;
+    private final CigarroRepository cigarroRepository;
+    private final WriteBehindCheckpointRepository checkpointRepository;
+    private final OptimisticRetry optimisticRetry;
+    private final CigarroMapper cigarroMapper = CigarroMapper.INSTANCE;
+
+    @Autowired
+    public StockWriteBehindFlusher(StockWriteBehindBuffer writeBehindBuffer,
+                                   CigarroService cigarroService,
+                                   CigarroRepository cigarroRepository,
+                                   WriteBehindCheckpointRepository checkpointRepository,
+                                   OptimisticRetry optimisticRetry) {
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.cigarroService = cigarroService;
+        this.cigarroRepository = cigarroRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.optimisticRetry = optimisticRetry;
+    }
+
+    /**
+     * Runs once every bean, event listeners included, is ready and before the web server accepts increments.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!writeBehindBuffer.isEnabled()) {
+            return;
+        }
+        long checkpoint = checkpointRepository.findById(CHECKPOINT_ID)
+                .map(WriteBehindCheckpoint::getSegment)
+                .orElse(0L);
+        Map<Long, Integer> increments = writeBehindBuffer.recover(checkpoint);
+        increments.forEach((id, quantity) -> cigarroRepository.findById(id)
+                .map(cigarroMapper::toDTO)
+                .ifPresent(cigarro -> writeBehindBuffer.restore(cigarro, quantity)));
+        if (!increments.isEmpty()) {
+            log.info("Recovered buffered increments of {} cigarros from the write-behind log", increments.size());
+        }
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${cigarro.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        if (!writeBehindBuffer.isEnabled()) {
+            return;
+        }
+        Flush flush = writeBehindBuffer.drain();
+        if (flush.isEmpty()) {
+            return;
+        }
+        try {
+            List<MovementResultDTO> results = optimisticRetry.execute(() -> {
+                List<MovementResultDTO> applied = cigarroService.applyBufferedIncrements(flush.getIncrements());
+                checkpointRepository.save(new WriteBehindCheckpoint(CHECKPOINT_ID, flush.getSegment()));
+                return applied;
+            });
+            writeBehindBuffer.flushed(flush, results);
+        } catch (CigarroConcurrentUpdateException e) {
+            log.warn("Write-behind flush of segment {} kept conflicting, its increments stay pending", flush.getSegment());
+        }
+    }
+}
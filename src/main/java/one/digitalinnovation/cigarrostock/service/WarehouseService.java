@@ -0,0 +1,194 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroLocationsDTO;
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.entity.Warehouse;
+import one.digitalinnovation.cigarrostock.entity.WarehouseStock;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.event.WarehouseStockChangedEvent;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseNotFoundException;
+import one.digitalinnovation.cigarrostock.mapper.WarehouseMapper;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.WarehouseRepository;
+import one.digitalinnovation.cigarrostock.repository.WarehouseStockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Stock per warehouse. Every movement is a conditional update of the (cigarro, warehouse) row it concerns, so
+ * movements at different warehouses never block each other, and a transfer updates both rows in one transaction.
+ * <p>
+ * The stock row of a cigarro at a warehouse is created on its first movement, in its own transaction before the
+ * movement one: movements must therefore not be called inside a transaction.
+ */
+@Service
+public class WarehouseService {
+
+    private final WarehouseRepository warehouseRepository;
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final CigarroRepository cigarroRepository;
+    private final WarehouseStockTotals warehouseStockTotals;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final WarehouseMapper warehouseMapper = WarehouseMapper.INSTANCE;
+
+    @Autowired
+    public WarehouseService(WarehouseRepository warehouseRepository,
+                            WarehouseStockRepository warehouseStockRepository,
+                            CigarroRepository cigarroRepository,
+                            WarehouseStockTotals warehouseStockTotals,
+                            ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager) {
+        this.warehouseRepository = warehouseRepository;
+        this.warehouseStockRepository = warehouseStockRepository;
+        this.cigarroRepository = cigarroRepository;
+        this.warehouseStockTotals = warehouseStockTotals;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional(rollbackFor = WarehouseAlreadyRegisteredException.class)
+    public WarehouseDTO createWarehouse(WarehouseDTO warehouseDTO) throws WarehouseAlreadyRegisteredException {
+        Warehouse warehouse = warehouseMapper.toModel(warehouseDTO);
+        warehouse.setId(null);
+        try {
+            return warehouseMapper.toDTO(warehouseRepository.saveAndFlush(warehouse));
+        } catch (DataIntegrityViolationException e) {
+            throw new WarehouseAlreadyRegisteredException(warehouseDTO.getCode());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<WarehouseDTO> listAll() {
+        return warehouseRepository.findAll()
+                .stream()
+                .map(warehouseMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the stock of a cigarro at each warehouse that ever held it, along with its total across warehouses.
+     */
+    @Transactional(readOnly = true)
+    public CigarroLocationsDTO findLocations(Long cigarroId) throws CigarroNotFoundException {
+        if (!cigarroRepository.existsById(cigarroId)) {
+            throw new CigarroNotFoundException(cigarroId);
+        }
+        List<WarehouseStockDTO> locations = warehouseStockRepository.findByCigarroIdOrderByWarehouseId(cigarroId)
+                .stream()
+                .map(warehouseMapper::toDTO)
+                .collect(Collectors.toList());
+        return new CigarroLocationsDTO(cigarroId, warehouseStockTotals.total(cigarroId), locations);
+    }
+
+    public WarehouseStockDTO increment(Long warehouseId, Long cigarroId, int quantityToIncrement) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockExceededException {
+        ensureStock(cigarroId, warehouseId);
+        MovementStatus status = transactionTemplate.execute(transaction ->
+                addQuantity(cigarroId, warehouseId, quantityToIncrement) ? MovementStatus.APPLIED : MovementStatus.STOCK_EXCEEDED);
+        if (status != MovementStatus.APPLIED) {
+            throw new CigarroStockExceededException(cigarroId, quantityToIncrement);
+        }
+        return findStock(cigarroId, warehouseId);
+    }
+
+    public WarehouseStockDTO decrement(Long warehouseId, Long cigarroId, int quantityToDecrement) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException {
+        ensureStock(cigarroId, warehouseId);
+        MovementStatus status = transactionTemplate.execute(transaction ->
+                addQuantity(cigarroId, warehouseId, -quantityToDecrement) ? MovementStatus.APPLIED : MovementStatus.INSUFFICIENT_STOCK);
+        if (status != MovementStatus.APPLIED) {
+            throw new CigarroStockInsufficientException(cigarroId, quantityToDecrement);
+        }
+        return findStock(cigarroId, warehouseId);
+    }
+
+    /**
+     * Moves units of a cigarro from one warehouse to another atomically: either both rows change or none does.
+     *
+     * @return the stock left at the source warehouse, then the stock at the destination one
+     */
+    public List<WarehouseStockDTO> transfer(StockTransferDTO transfer) throws WarehouseNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException, CigarroStockExceededException {
+        Long cigarroId = transfer.getCigarroId();
+        int quantity = transfer.getQuantity();
+        ensureStock(cigarroId, transfer.getFromWarehouseId());
+        ensureStock(cigarroId, transfer.getToWarehouseId());
+        MovementStatus status = transactionTemplate.execute(transaction -> {
+            MovementStatus result = applyTransfer(transfer);
+            if (result != MovementStatus.APPLIED) {
+                transaction.setRollbackOnly();
+            }
+            return result;
+        });
+        if (status == MovementStatus.INSUFFICIENT_STOCK) {
+            throw new CigarroStockInsufficientException(cigarroId, quantity);
+        }
+        if (status == MovementStatus.STOCK_EXCEEDED) {
+            throw new CigarroStockExceededException(cigarroId, quantity);
+        }
+        return Arrays.asList(findStock(cigarroId, transfer.getFromWarehouseId()), findStock(cigarroId, transfer.getToWarehouseId()));
+    }
+
+    /**
+     * Updates the two rows in warehouse id order, whatever the direction, so opposite transfers cannot deadlock.
+     */
+    private MovementStatus applyTransfer(StockTransferDTO transfer) {
+        Long cigarroId = transfer.getCigarroId();
+        int quantity = transfer.getQuantity();
+        boolean sourceFirst = transfer.getFromWarehouseId() < transfer.getToWarehouseId();
+        if (sourceFirst && !addQuantity(cigarroId, transfer.getFromWarehouseId(), -quantity)) {
+            return MovementStatus.INSUFFICIENT_STOCK;
+        }
+        if (!addQuantity(cigarroId, transfer.getToWarehouseId(), quantity)) {
+            return MovementStatus.STOCK_EXCEEDED;
+        }
+        if (!sourceFirst && !addQuantity(cigarroId, transfer.getFromWarehouseId(), -quantity)) {
+            return MovementStatus.INSUFFICIENT_STOCK;
+        }
+        return MovementStatus.APPLIED;
+    }
+
+    private boolean addQuantity(Long cigarroId, Long warehouseId, int quantity) {
+        if (warehouseStockRepository.addQuantity(cigarroId, warehouseId, quantity) == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(new WarehouseStockChangedEvent(this, cigarroId, warehouseId, quantity));
+        return true;
+    }
+
+    private void ensureStock(Long cigarroId, Long warehouseId) throws WarehouseNotFoundException, CigarroNotFoundException {
+        if (warehouseStockRepository.existsByCigarroIdAndWarehouseId(cigarroId, warehouseId)) {
+            return;
+        }
+        if (!warehouseRepository.existsById(warehouseId)) {
+            throw new WarehouseNotFoundException(warehouseId);
+        }
+        if (!cigarroRepository.existsById(cigarroId)) {
+            throw new CigarroNotFoundException(cigarroId);
+        }
+        try {
+            warehouseStockRepository.saveAndFlush(new WarehouseStock(null, cigarroId, warehouseId, 0));
+        } catch (DataIntegrityViolationException e) {
+            // created meanwhile by a concurrent first movement
+        }
+    }
+
+    private WarehouseStockDTO findStock(Long cigarroId, Long warehouseId) {
+        return warehouseStockRepository.findByCigarroIdAndWarehouseId(cigarroId, warehouseId)
+                .map(warehouseMapper::toDTO)
+                .orElseThrow(IllegalStateException::new);
+    }
+}
@@ -0,0 +1,58 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.WarehouseStockChangedEvent;
+import one.digitalinnovation.cigarrostock.repository.WarehouseStockRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Units of each cigarro across all warehouses. The totals are summed once on startup and then kept up to date
+ * from committed warehouse movements, so reading one never scans the per-warehouse rows. Each total is a
+ * {@link LongAdder}, so movements of the same cigarro at different warehouses do not contend on it either.
+ */
+@Component
+public class WarehouseStockTotals implements SmartInitializingSingleton {
+
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final Map<Long, LongAdder> totals = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WarehouseStockTotals(WarehouseStockRepository warehouseStockRepository) {
+        this.warehouseStockRepository = warehouseStockRepository;
+    }
+
+    /**
+     * Runs before the web server accepts movements, so none can be missed while summing.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        warehouseStockRepository.sumQuantityByCigarro()
+                .forEach(total -> totalOf(total.getCigarroId()).add(total.getQuantity()));
+    }
+
+    public long total(Long cigarroId) {
+        LongAdder total = totals.get(cigarroId);
+        return total == null ? 0 : total.sum();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(WarehouseStockChangedEvent event) {
+        totalOf(event.getCigarroId()).add(event.getQuantity());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CigarroDeletedEvent event) {
+        totals.remove(event.getCigarroId());
+    }
+
+    private LongAdder totalOf(Long cigarroId) {
+        return totals.computeIfAbsent(cigarroId, id -> new LongAdder());
+    }
+}
@@ -0,0 +1,46 @@
+create sequence cigarro_sequence start with 1 increment by 50;
+create sequence stock_movement_sequence start with 1 increment by 50;
+create sequence stock_snapshot_sequence start with 1 increment by 50;
+
+create table cigarro (
+    id bigint not null,
+    name varchar(255) not null,
+    brand varchar(255) not null,
+    max integer not null,
+    quantity integer not null,
+    type varchar(255) not null,
+    reorder_threshold integer,
+    version bigint,
+    primary key (id),
+    constraint uk_cigarro_name unique (name)
+);
+
+create index idx_cigarro_brand_type_quantity on cigarro (brand, type, quantity);
+create index idx_cigarro_type_quantity on cigarro (type, quantity);
+create index idx_cigarro_quantity on cigarro (quantity);
+
+-- Movement ids come from a pooled sequence and are handed out before commit, so they do not follow commit order.
+-- The journal is positioned by the cigarro version each movement produced instead: it only moves under the row lock.
+create table stock_movement (
+    id bigint not null,
+    cigarro_id bigint not null,
+    cigarro_version bigint not null,
+    quantity integer not null,
+    type varchar(255) not null,
+    moved_at timestamp not null,
+    primary key (id)
+);
+
+create index idx_stock_movement_cigarro_moved_at on stock_movement (cigarro_id, moved_at);
+create index idx_stock_movement_cigarro_version on stock_movement (cigarro_id, cigarro_version);
+
+create table stock_snapshot (
+    id bigint not null,
+    cigarro_id bigint not null,
+    cigarro_version bigint not null,
+    quantity bigint not null,
+    taken_at timestamp not null,
+    primary key (id)
+);
+
+create index idx_stock_snapshot_cigarro_version on stock_snapshot (cigarro_id, cigarro_version);
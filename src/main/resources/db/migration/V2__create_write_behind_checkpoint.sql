@@ -0,0 +1,5 @@
+create table write_behind_checkpoint (
+    id integer not null,
+    segment bigint not null,
+    primary key (id)
+);
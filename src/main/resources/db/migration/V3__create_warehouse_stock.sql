@@ -0,0 +1,21 @@
+create sequence warehouse_sequence start with 1 increment by 50;
+create sequence warehouse_stock_sequence start with 1 increment by 50;
+
+create table warehouse (
+    id bigint not null,
+    code varchar(255) not null,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_warehouse_code unique (code)
+);
+
+create table warehouse_stock (
+    id bigint not null,
+    cigarro_id bigint not null,
+    warehouse_id bigint not null,
+    quantity integer not null,
+    primary key (id),
+    constraint uk_warehouse_stock_cigarro_warehouse unique (cigarro_id, warehouse_id),
+    constraint fk_warehouse_stock_cigarro foreign key (cigarro_id) references cigarro (id) on delete cascade,
+    constraint fk_warehouse_stock_warehouse foreign key (warehouse_id) references warehouse (id)
+);
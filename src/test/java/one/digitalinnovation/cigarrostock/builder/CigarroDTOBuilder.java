@@ -25,12 +25,18 @@ public class CigarroDTOBuilder {
     @Builder.Default
     private CigarroType type = CigarroType.VIRGINIA;
 
+    private Integer reorderThreshold;
+
+    private Long version;
+
     public CigarroDTO toCigarroDTO() {
         return new CigarroDTO(id,
                 name,
                 brand,
                 max,
                 quantity,
-                type);
+                type,
+                reorderThreshold,
+                version);
     }
 }
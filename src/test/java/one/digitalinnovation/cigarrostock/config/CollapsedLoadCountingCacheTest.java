@@ -0,0 +1,92 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CollapsedLoadCountingCacheTest {
+
+    private static final String KEY = "Marlboro";
+    private static final int CALLERS = 4;
+
+    private final Counter collapsedLoads = new SimpleMeterRegistry().counter("cigarro.cache.collapsed");
+
+    private final CollapsedLoadCountingCache cache = new CollapsedLoadCountingCache(CacheConfig.CIGARROS_CACHE,
+            Caffeine.newBuilder().build(), true, collapsedLoads);
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void whenLookupsArriveWhileTheKeyIsLoadingThenTheyAreCountedAsCollapsed() throws Exception {
+        // given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> lookups = new ArrayList<>();
+        lookups.add(callers.submit(() -> cache.get(KEY, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "loaded";
+        })));
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        // when
+        for (int i = 1; i < CALLERS; i++) {
+            lookups.add(callers.submit(() -> cache.get(KEY, () -> {
+                loads.incrementAndGet();
+                return "loaded again";
+            })));
+        }
+        awaitCollapsed(CALLERS - 1);
+        release.countDown();
+
+        // then
+        for (Future<String> lookup : lookups) {
+            assertThat(lookup.get(1, TimeUnit.SECONDS), is(equalTo("loaded")));
+        }
+        assertThat(loads.get(), is(equalTo(1)));
+        assertThat(collapsedLoads.count(), is(equalTo((double) CALLERS - 1)));
+    }
+
+    @Test
+    void whenKeyIsAlreadyCachedThenLookupsAreNotCountedAsCollapsed() {
+        // given
+        cache.put(KEY, "cached");
+
+        // when
+        String value = cache.get(KEY, () -> "loaded");
+
+        // then
+        assertThat(value, is(equalTo("cached")));
+        assertThat(collapsedLoads.count(), is(equalTo(0.0)));
+    }
+
+    private void awaitCollapsed(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (collapsedLoads.count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
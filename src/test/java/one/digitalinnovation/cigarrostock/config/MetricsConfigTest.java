@@ -0,0 +1,57 @@
+package one.digitalinnovation.cigarrostock.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MetricsConfigTest {
+
+    @Mock
+    private CigarroRepository cigarroRepository;
+
+    @Test
+    void whenEveryTypeIsScrapedThenStockUnitsAreQueriedOnce() {
+        // given
+        when(cigarroRepository.summarizeByType())
+                .thenReturn(Collections.singletonList(new StockSummaryDTO(CigarroType.VIRGINIA, 2L, 30L, 100L)));
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new MetricsConfig().stockUnitsByType(cigarroRepository, 60_000).bindTo(meterRegistry);
+
+        // when
+        double virginiaUnits = stockUnits(meterRegistry, CigarroType.VIRGINIA);
+        double otherUnits = 0;
+        for (CigarroType type : CigarroType.values()) {
+            if (type != CigarroType.VIRGINIA) {
+                otherUnits += stockUnits(meterRegistry, type);
+            }
+        }
+
+        // then
+        assertThat(virginiaUnits, is(equalTo(30.0)));
+        assertThat(otherUnits, is(equalTo(0.0)));
+        verify(cigarroRepository, times(1)).summarizeByType();
+    }
+
+    private double stockUnits(MeterRegistry meterRegistry, CigarroType type) {
+        return meterRegistry.get("cigarro.stock.units")
+                .tag("type", type.name())
+                .gauge()
+                .value();
+    }
+}
@@ -0,0 +1,100 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import one.digitalinnovation.cigarrostock.controller.CigarroCatalogueVersion.Listing;
+import one.digitalinnovation.cigarrostock.controller.CigarroCatalogueVersion.Version;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CigarroCatalogueVersionTest {
+
+    @Mock
+    private Clock clock;
+
+    private CigarroCatalogueVersion catalogueVersion;
+
+    @BeforeEach
+    void setUp() {
+        when(clock.millis()).thenReturn(10_200L);
+        catalogueVersion = new CigarroCatalogueVersion(clock);
+    }
+
+    @Test
+    void whenACigarroETagIsReadBackThenOnlyTagsOfThatCigarroInThisEpochGiveItsVersion() {
+        String eTag = catalogueVersion.eTag(7L, 3L);
+
+        when(clock.millis()).thenReturn(20_000L);
+        CigarroCatalogueVersion restarted = new CigarroCatalogueVersion(clock);
+
+        assertThat(catalogueVersion.cigarroVersion(eTag, 7L), is(equalTo(3L)));
+        assertThat(catalogueVersion.cigarroVersion(eTag, 8L), is(nullValue()));
+        assertThat(catalogueVersion.cigarroVersion("3", 7L), is(nullValue()));
+        assertThat(restarted.cigarroVersion(eTag, 7L), is(nullValue()));
+    }
+
+    @Test
+    void whenTheSecondOfTheLastChangeIsNotOverThenLastModifiedIsWithheld() {
+        // given
+        Version version = catalogueVersion.current();
+
+        // when
+        when(clock.millis()).thenReturn(10_900L);
+
+        // then
+        assertThat(catalogueVersion.lastModified(version), is(equalTo(-1L)));
+        when(clock.millis()).thenReturn(11_000L);
+        assertThat(catalogueVersion.lastModified(version), is(equalTo(10_000L)));
+    }
+
+    @Test
+    void whenIfModifiedSinceIsCheckedThenOnlyDatesFromEarlierSecondsProveTheVersionIsHeld() {
+        // given
+        when(clock.millis()).thenReturn(12_500L);
+        Version version = catalogueVersion.current();
+
+        // then
+        assertTrue(catalogueVersion.isNotModifiedSince(version, 10_000L));
+        assertTrue(catalogueVersion.isNotModifiedSince(version, 11_000L));
+        assertFalse(catalogueVersion.isNotModifiedSince(version, 9_000L));
+        assertFalse(catalogueVersion.isNotModifiedSince(version, 12_000L));
+        assertFalse(catalogueVersion.isNotModifiedSince(version, -1L));
+
+        catalogueVersion.onDeleted(new CigarroDeletedEvent(this, 1L, "Brahma"));
+
+        assertFalse(catalogueVersion.isNotModifiedSince(catalogueVersion.current(), 11_000L));
+    }
+
+    @Test
+    void whenCatalogueChangesThenTheListingIsSerializedAgainUnderANewETag() throws Exception {
+        // given
+        AtomicInteger serializations = new AtomicInteger();
+        Version version = catalogueVersion.current();
+
+        // when
+        Listing listing = catalogueVersion.listing(() -> new byte[]{(byte) serializations.incrementAndGet()});
+
+        // then
+        assertThat(catalogueVersion.listing(() -> new byte[]{(byte) serializations.incrementAndGet()}), is(sameInstance(listing)));
+        catalogueVersion.onDeleted(new CigarroDeletedEvent(this, 1L, "Brahma"));
+        Listing changedListing = catalogueVersion.listing(() -> new byte[]{(byte) serializations.incrementAndGet()});
+        assertThat(changedListing.getBody()[0], is(equalTo((byte) 2)));
+        assertThat(catalogueVersion.eTag(changedListing.getVersion()), is(not(equalTo(catalogueVersion.eTag(version)))));
+    }
+}
@@ -0,0 +1,146 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.cigarrostock.dto.CigarroChangeDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroChangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CigarroChangeFeedTest {
+
+    private static final int HISTORY_SIZE = 4;
+    private static final int SUBSCRIBER_BUFFER_SIZE = 2;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService senders = Executors.newSingleThreadExecutor();
+
+    private final CigarroChangeFeed cigarroChangeFeed = new CigarroChangeFeed(meterRegistry, HISTORY_SIZE, SUBSCRIBER_BUFFER_SIZE, 0L, senders);
+
+    @AfterEach
+    void tearDown() {
+        senders.shutdownNow();
+    }
+
+    @Test
+    void whenChangesAreAppendedThenSubscribersReceiveThemInSequence() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        cigarroChangeFeed.subscribe(null, emitter);
+
+        appendChanges(2);
+        awaitSenders();
+
+        assertThat(emitter.eventIds(), contains("1", "2"));
+    }
+
+    @Test
+    void whenSubscribingSinceASequenceThenOnlyMissedChangesAreReplayed() throws Exception {
+        appendChanges(3);
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        cigarroChangeFeed.subscribe(1L, emitter);
+        awaitSenders();
+
+        assertThat(emitter.eventIds(), contains("2", "3"));
+    }
+
+    @Test
+    void whenMissedChangesAreNoLongerAvailableThenResetIsSent() throws Exception {
+        appendChanges(HISTORY_SIZE + 2);
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        cigarroChangeFeed.subscribe(1L, emitter);
+        awaitSenders();
+
+        assertThat(emitter.events.size(), is(equalTo(1)));
+        assertThat(emitter.events.get(0), startsWith("id:" + (HISTORY_SIZE + 2) + "\nevent:" + CigarroChangeFeed.RESET_EVENT_NAME));
+    }
+
+    @Test
+    void whenSubscriberFallsBehindItsBufferThenItIsDropped() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter slowEmitter = new RecordingEmitter(unblock);
+        cigarroChangeFeed.subscribe(null, slowEmitter);
+
+        appendChanges(1);
+        assertTrue(slowEmitter.sending.await(1, TimeUnit.SECONDS));
+        appendChanges(SUBSCRIBER_BUFFER_SIZE + 1);
+        unblock.countDown();
+        awaitSenders();
+
+        assertTrue(slowEmitter.completed);
+        assertThat(cigarroChangeFeed.subscriberCount(), is(equalTo(0)));
+        assertThat(meterRegistry.counter("cigarro.changes.dropped").count(), is(equalTo(1.0)));
+    }
+
+    private void appendChanges(int changes) {
+        for (int i = 0; i < changes; i++) {
+            cigarroChangeFeed.append(new CigarroChangeDTO(null, CigarroChangeType.UPDATED, 1L, "Marlboro", i, Instant.now()));
+        }
+    }
+
+    private void awaitSenders() throws Exception {
+        senders.submit(() -> { }).get(1, TimeUnit.SECONDS);
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch unblock;
+        private volatile boolean completed;
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(String.class::isInstance)
+                    .map(String.class::cast)
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        List<String> eventIds() {
+            return events.stream()
+                    .map(event -> event.substring("id:".length(), event.indexOf('\n')))
+                    .collect(Collectors.toList());
+        }
+    }
+}
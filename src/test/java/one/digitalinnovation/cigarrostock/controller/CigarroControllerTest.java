@@ -1,48 +1,124 @@
 package one.digitalinnovation.cigarrostock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.dto.CigarroBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
 import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportErrorDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportResultDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementBatchDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
 import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.ReorderThresholdDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroCsvHeaderException;
 import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroReservationNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.CigarroVersionMismatchException;
+import one.digitalinnovation.cigarrostock.service.CigarroCsvService;
+import one.digitalinnovation.cigarrostock.service.CigarroReportService;
+import one.digitalinnovation.cigarrostock.service.CigarroSearchIndex;
 import one.digitalinnovation.cigarrostock.service.CigarroService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.io.Writer;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 import static one.digitalinnovation.cigarrostock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 public class CigarroControllerTest {
 
-    private static final String CIGARRO_API_URL_PATH = "/api/v1/beers";
+    private static final String CIGARRO_API_URL_PATH = "/api/cigarros";
     private static final long VALID_CIGARRO_ID = 1L;
     private static final long INVALID_CIGARRO_ID = 2l;
+    private static final String INVALID_CIGARRO_NAME = "Unknown";
     private static final String CIGARRO_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String CIGARRO_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String CIGARRO_API_SUBPATH_MOVEMENTS_URL = "/movements";
+    private static final String CIGARRO_API_SUBPATH_BULK_URL = "/bulk";
+    private static final String CIGARRO_API_SUBPATH_RESERVATIONS_URL = "/reservations";
+    private static final String CIGARRO_API_SUBPATH_STREAM_URL = "/stream";
+    private static final String CIGARRO_API_SUBPATH_REPORT_URL = "/report";
+    private static final String CIGARRO_API_SUBPATH_IMPORT_URL = "/import";
+    private static final String CIGARRO_API_SUBPATH_EXPORT_URL = "/export";
+    private static final String TEXT_CSV_VALUE = "text/csv";
 
     private MockMvc mockMvc;
 
     @Mock
     private CigarroService cigarroService;
 
+    @Mock
+    private CigarroReportService cigarroReportService;
+
+    @Mock
+    private CigarroCsvService cigarroCsvService;
+
+    @Mock
+    private CigarroSearchIndex cigarroSearchIndex;
+
+    @Mock
+    private LowStockAlertBroadcaster lowStockAlertBroadcaster;
+
+    @Mock
+    private CigarroChangeFeed cigarroChangeFeed;
+
+    @Spy
+    private CigarroCatalogueVersion cigarroCatalogueVersion = new CigarroCatalogueVersion();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private CigarroController cigarroController;
 
@@ -85,6 +161,39 @@ public class CigarroControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenPOSTBulkIsCalledThenCigarrosAreCreated() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        CigarroBatchDTO cigarroBatchDTO = new CigarroBatchDTO(Collections.singletonList(cigarroDTO));
+
+        // when
+        when(cigarroService.createCigarros(cigarroBatchDTO.getCigarros())).thenReturn(cigarroBatchDTO.getCigarros());
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_BULK_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(cigarroBatchDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].name", is(cigarroDTO.getName())));
+    }
+
+    @Test
+    void whenPOSTBulkIsCalledWithAlreadyRegisteredCigarroThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        CigarroBatchDTO cigarroBatchDTO = new CigarroBatchDTO(Collections.singletonList(cigarroDTO));
+
+        // when
+        when(cigarroService.createCigarros(cigarroBatchDTO.getCigarros())).thenThrow(CigarroAlreadyRegisteredException.class);
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_BULK_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(cigarroBatchDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void whenGETIsCalledWithValidNameThenOkStatusIsReturned() throws Exception {
         // given
@@ -147,6 +256,322 @@ public class CigarroControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void whenGETListIsCalledAgainWithItsETagThenNotModifiedStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+
+        //when
+        when(cigarroService.listAll()).thenReturn(Collections.singletonList(cigarroDTO));
+
+        // then
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(cigarroDTO.getName())));
+        verify(cigarroService, times(1)).listAll();
+    }
+
+    @Test
+    void whenCatalogueChangesThenGETListIsSerializedAgainWithANewETag() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        CigarroDTO incrementedCigarroDTO = CigarroDTOBuilder.builder().quantity(20).build().toCigarroDTO();
+
+        //when
+        when(cigarroService.listAll()).thenReturn(Collections.singletonList(cigarroDTO)).thenReturn(Collections.singletonList(incrementedCigarroDTO));
+
+        // then
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        cigarroCatalogueVersion.onStockChanged(new CigarroStockChangedEvent(this, cigarroDTO.getId(), cigarroDTO.getName(),
+                cigarroDTO.getBrand(), StockMovementType.INCREMENT, 10, 20, null, 1L));
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(jsonPath("$[0].quantity", is(20)));
+    }
+
+    @Test
+    void whenGETIsCalledWithTheETagOfTheCurrentCigarroVersionThenNotModifiedStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().version(3L).build().toCigarroDTO();
+        String eTag = quoted(cigarroCatalogueVersion.eTag(cigarroDTO.getId(), 3L));
+
+        //when
+        when(cigarroService.findByName(cigarroDTO.getName())).thenReturn(cigarroDTO);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + cigarroDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + cigarroDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, quoted(cigarroCatalogueVersion.eTag(cigarroDTO.getId(), 2L))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + cigarroDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void whenGETIsCalledWithIfModifiedSinceForAnUnknownNameThenNotFoundStatusIsReturned() throws Exception {
+        // given
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setIfModifiedSince(System.currentTimeMillis());
+        // the catalogue only vouches for dates whose second is over
+        Thread.sleep(1000 - System.currentTimeMillis() % 1000);
+
+        // when
+        when(cigarroService.findByName(INVALID_CIGARRO_NAME)).thenThrow(CigarroNotFoundException.class);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + INVALID_CIGARRO_NAME)
+                .headers(conditionalHeaders))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGETPageIsCalledThenOkStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        PageRequest pageable = PageRequest.of(0, 10);
+
+        //when
+        when(cigarroService.listAll(pageable)).thenReturn(new PageImpl<>(Collections.singletonList(cigarroDTO), pageable, 1));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "?page=0&size=10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name", is(cigarroDTO.getName())))
+                .andExpect(jsonPath("$.totalElements", is(1)));
+    }
+
+    @Test
+    void whenGETFilterIsCalledThenOkStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        CigarroFilterDTO filter = CigarroFilterDTO.builder().brand(cigarroDTO.getBrand()).type(cigarroDTO.getType()).minQuantity(5).build();
+        PageRequest pageable = PageRequest.of(0, 10);
+
+        //when
+        when(cigarroService.filter(filter, pageable)).thenReturn(new PageImpl<>(Collections.singletonList(cigarroDTO), pageable, 1));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/filter")
+                .param("brand", cigarroDTO.getBrand())
+                .param("type", cigarroDTO.getType().name())
+                .param("minQuantity", "5")
+                .param("page", "0")
+                .param("size", "10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name", is(cigarroDTO.getName())));
+    }
+
+    @Test
+    void whenGETFilterIsCalledWithNegativeQuantityThenAnErrorIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/filter?minQuantity=-1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETSearchIsCalledThenMatchingCigarrosAreReturned() throws Exception {
+        // given
+        CigarroSearchResultDTO resultDTO = new CigarroSearchResultDTO(VALID_CIGARRO_ID, "Marlboro", "Philip Morris");
+
+        // when
+        when(cigarroSearchIndex.search("marl", 50)).thenReturn(Collections.singletonList(resultDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/search?q=marl&size=500")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Marlboro")));
+    }
+
+    @Test
+    void whenGETAfterIdIsCalledThenOkStatusIsReturned() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+
+        //when
+        when(cigarroService.listAfter(0L, 10)).thenReturn(Collections.singletonList(cigarroDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "?afterId=0&size=10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(cigarroDTO.getName())));
+    }
+
+    @Test
+    void whenGETAfterIdIsCalledWithoutPositiveSizeThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "?afterId=0&size=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenGETTypeReportIsCalledThenStockSummaryPerTypeIsReturned() throws Exception {
+        // given
+        StockSummaryDTO summaryDTO = new StockSummaryDTO("VIRGINIA", 2L, 30L, 120L);
+
+        // when
+        when(cigarroReportService.summarizeByType()).thenReturn(Collections.singletonList(summaryDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_REPORT_URL + "/types")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].group", is("VIRGINIA")))
+                .andExpect(jsonPath("$[0].quantity", is(30)))
+                .andExpect(jsonPath("$[0].fillRatio", is(0.25)));
+    }
+
+    @Test
+    void whenGETCapacityReportIsCalledThenCigarrosAboveThePercentageAreReturned() throws Exception {
+        // given
+        CigarroCapacityDTO capacityDTO = new CigarroCapacityDTO(VALID_CIGARRO_ID, "Full", "Brand", 45, 50);
+
+        // when
+        when(cigarroReportService.findFilledAtLeast(90, 100)).thenReturn(Collections.singletonList(capacityDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_REPORT_URL + "/capacity?percent=90")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Full")))
+                .andExpect(jsonPath("$[0].fillRatio", is(0.9)));
+    }
+
+    @Test
+    void whenGETCapacityReportIsCalledWithoutPositiveSizeThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_REPORT_URL + "/capacity?percent=90&size=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroReportService);
+    }
+
+    @Test
+    void whenGETMovementsIsCalledWithATimeRangeThenJournaledMovementsAreReturned() throws Exception {
+        // given
+        Instant from = Instant.parse("2026-01-01T00:00:00Z");
+        Instant to = Instant.parse("2026-01-02T00:00:00Z");
+        StockMovementDTO movementDTO = new StockMovementDTO(1L, VALID_CIGARRO_ID, -5, StockMovementType.DECREMENT, from);
+
+        //when
+        when(cigarroService.findMovements(VALID_CIGARRO_ID, from, to, 100)).thenReturn(Collections.singletonList(movementDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/movements")
+                .param("from", from.toString())
+                .param("to", to.toString())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].quantity", is(-5)))
+                .andExpect(jsonPath("$[0].type", is(StockMovementType.DECREMENT.toString())));
+    }
+
+    @Test
+    void whenGETMovementsIsCalledWithoutPositiveSizeThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/movements")
+                .param("from", "2026-01-01T00:00:00Z")
+                .param("to", "2026-01-02T00:00:00Z")
+                .param("size", "0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenGETStreamIsCalledThenEachCigarroIsWrittenInItsOwnLine() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+
+        //when
+        doAnswer(invocation -> {
+            Consumer<CigarroDTO> consumer = invocation.getArgument(0);
+            consumer.accept(cigarroDTO);
+            consumer.accept(cigarroDTO);
+            return null;
+        }).when(cigarroService).streamAll(any());
+
+        // then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_STREAM_URL))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(asJsonString(cigarroDTO) + "\n" + asJsonString(cigarroDTO) + "\n"));
+    }
+
+    @Test
+    void whenPOSTImportIsCalledThenImportResultIsReturned() throws Exception {
+        // given
+        String csv = "name,brand,max,quantity,type\nBrahma,Ambev,50,10,VIRGINIA\n";
+        CigarroImportResultDTO importResultDTO = new CigarroImportResultDTO(1, 1,
+                Collections.singletonList(new CigarroImportErrorDTO(3, "max: must be less than or equal to 500")));
+
+        // when
+        when(cigarroCsvService.importCsv(any())).thenReturn(importResultDTO);
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_IMPORT_URL)
+                .contentType(TEXT_CSV_VALUE)
+                .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)));
+    }
+
+    @Test
+    void whenPOSTImportIsCalledWithoutRequiredColumnsThenBadRequestStatusIsReturned() throws Exception {
+        // when
+        when(cigarroCsvService.importCsv(any())).thenThrow(new CigarroCsvHeaderException(Collections.singletonList("type")));
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_IMPORT_URL)
+                .contentType(TEXT_CSV_VALUE)
+                .content("name,brand,max,quantity\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETExportIsCalledThenCsvIsStreamedAsAnAttachment() throws Exception {
+        // when
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(0);
+            writer.write("id,name\n1,Brahma\n");
+            writer.flush();
+            return null;
+        }).when(cigarroCsvService).exportCsv(any());
+
+        // then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_EXPORT_URL))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"cigarros.csv\""))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string("id,name\n1,Brahma\n"));
+    }
+
     @Test
     void whenDELETEIsCalledWithValidIdThenNoContentStatusIsReturned() throws Exception {
         // given
@@ -192,6 +617,142 @@ public class CigarroControllerTest {
                 .andExpect(jsonPath("$.quantity", is(cigarroDTO.getQuantity())));
     }
 
+    @Test
+    void whenPATCHIsCalledToIncrementANegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(-10)
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenPATCHIsCalledWithIfMatchThenConditionalIncrementIsApplied() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().version(4L).build().toCigarroDTO();
+
+        when(cigarroService.increment(VALID_CIGARRO_ID, quantityDTO.getQuantity(), 3L)).thenReturn(cigarroDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_INCREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, quoted(cigarroCatalogueVersion.eTag(VALID_CIGARRO_ID, 3L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, quoted(cigarroCatalogueVersion.eTag(VALID_CIGARRO_ID, 4L))));
+    }
+
+    @Test
+    void whenPUTReorderThresholdIsCalledThenThresholdIsUpdated() throws Exception {
+        // given
+        ReorderThresholdDTO reorderThresholdDTO = new ReorderThresholdDTO(15);
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().reorderThreshold(15).build().toCigarroDTO();
+
+        // when
+        when(cigarroService.updateReorderThreshold(VALID_CIGARRO_ID, 15)).thenReturn(cigarroDTO);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.put(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/reorder-threshold")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(reorderThresholdDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reorderThreshold", is(15)));
+    }
+
+    @Test
+    void whenPUTReorderThresholdIsCalledWithNegativeValueThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/reorder-threshold")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new ReorderThresholdDTO(-1))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETChangesIsCalledWithLastEventIdThenTheFeedResumesAfterIt() throws Exception {
+        // when
+        when(cigarroChangeFeed.subscribe(41L)).thenReturn(new SseEmitter());
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/changes")
+                .header("Last-Event-ID", "41")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void whenGETAlertsIsCalledThenAnEventStreamIsOpened() throws Exception {
+        // when
+        when(lowStockAlertBroadcaster.subscribe()).thenReturn(new SseEmitter());
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(CIGARRO_API_URL_PATH + "/alerts")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithStaleIfMatchThenPreconditionFailedStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        when(cigarroService.increment(VALID_CIGARRO_ID, quantityDTO.getQuantity(), 3L)).thenThrow(CigarroVersionMismatchException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_INCREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, quoted(cigarroCatalogueVersion.eTag(VALID_CIGARRO_ID, 3L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithTheETagOfAnotherCigarroThenItNeverMatches() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        when(cigarroService.increment(VALID_CIGARRO_ID, quantityDTO.getQuantity(), -1L)).thenThrow(CigarroVersionMismatchException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_INCREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, quoted(cigarroCatalogueVersion.eTag(INVALID_CIGARRO_ID, 3L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isPreconditionFailed());
+
+        verify(cigarroService, never()).increment(VALID_CIGARRO_ID, quantityDTO.getQuantity(), 3L);
+    }
+
+    @Test
+    void whenPOSTIsCalledWithMovementsThenEachResultIsReturned() throws Exception {
+        MovementBatchDTO movementBatchDTO = MovementBatchDTO.builder()
+                .movements(Collections.singletonList(new MovementDTO(VALID_CIGARRO_ID, 10)))
+                .build();
+        MovementResultDTO movementResultDTO = new MovementResultDTO(VALID_CIGARRO_ID, 20, MovementStatus.APPLIED);
+
+        when(cigarroService.applyMovements(movementBatchDTO.getMovements())).thenReturn(Collections.singletonList(movementResultDTO));
+
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movementBatchDTO))).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is((int) VALID_CIGARRO_ID)))
+                .andExpect(jsonPath("$[0].quantity", is(movementResultDTO.getQuantity())))
+                .andExpect(jsonPath("$[0].status", is(movementResultDTO.getStatus().toString())));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithoutMovementsThenBadRequestStatusIsReturned() throws Exception {
+        MovementBatchDTO movementBatchDTO = MovementBatchDTO.builder()
+                .movements(Collections.emptyList())
+                .build();
+
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movementBatchDTO))).andExpect(status().isBadRequest());
+    }
+
 //    @Test
 //    void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
 //        QuantityDTO quantityDTO = QuantityDTO.builder()
@@ -220,53 +781,108 @@ public class CigarroControllerTest {
 //                .content(asJsonString(quantityDTO)))
 //                .andExpect(status().isNotFound());
 //    }
-//
-//    @Test
-//    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenReturn(beerDTO);
-//
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
-//                .andExpect(jsonPath("$.name", is(beerDTO.getName())))
-//                .andExpect(jsonPath("$.brand", is(beerDTO.getBrand())))
-//                .andExpect(jsonPath("$.type", is(beerDTO.getType().toString())))
-//                .andExpect(jsonPath("$.quantity", is(beerDTO.getQuantity())));
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledToDEcrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(60)
-//                .build();
-//
-//        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerStockExceededException.class);
-//
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledWithInvalidBeerIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        when(beerService.decrement(INVALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerNotFoundException.class);
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + INVALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO)))
-//                .andExpect(status().isNotFound());
-//    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        cigarroDTO.setQuantity(cigarroDTO.getQuantity() - quantityDTO.getQuantity());
+
+        when(cigarroService.decrement(VALID_CIGARRO_ID, quantityDTO.getQuantity())).thenReturn(cigarroDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(cigarroDTO.getName())))
+                .andExpect(jsonPath("$.brand", is(cigarroDTO.getBrand())))
+                .andExpect(jsonPath("$.type", is(cigarroDTO.getType().toString())))
+                .andExpect(jsonPath("$.quantity", is(cigarroDTO.getQuantity())));
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(60)
+                .build();
+
+        when(cigarroService.decrement(VALID_CIGARRO_ID, quantityDTO.getQuantity())).thenThrow(CigarroStockInsufficientException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementANegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(-5)
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenPATCHIsCalledWithInvalidCigarroIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(cigarroService.decrement(INVALID_CIGARRO_ID, quantityDTO.getQuantity())).thenThrow(CigarroNotFoundException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(CIGARRO_API_URL_PATH + "/" + INVALID_CIGARRO_ID + CIGARRO_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveThenCreatedStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+        ReservationDTO reservationDTO = new ReservationDTO(UUID.randomUUID(), VALID_CIGARRO_ID, quantityDTO.getQuantity(), Instant.now());
+
+        when(cigarroService.reserve(VALID_CIGARRO_ID, quantityDTO.getQuantity())).thenReturn(reservationDTO);
+
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_RESERVATIONS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(reservationDTO.getId().toString())))
+                .andExpect(jsonPath("$.quantity", is(reservationDTO.getQuantity())));
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveANegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(-5)
+                .build();
+
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + CIGARRO_API_SUBPATH_RESERVATIONS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenDELETEIsCalledWithExpiredReservationThenNotFoundStatusIsReturned() throws Exception {
+        UUID reservationId = UUID.randomUUID();
+
+        doThrow(CigarroReservationNotFoundException.class).when(cigarroService).releaseReservation(reservationId);
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(CIGARRO_API_URL_PATH + CIGARRO_API_SUBPATH_RESERVATIONS_URL + "/" + reservationId)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String quoted(String eTag) {
+        return "\"" + eTag + "\"";
+    }
 }
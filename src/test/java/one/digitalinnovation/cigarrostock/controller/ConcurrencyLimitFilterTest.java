@@ -0,0 +1,91 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ConcurrencyLimitFilterTest {
+
+    private static final String INCREMENT_PATH = "/api/cigarros/1/increment";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final ConcurrencyLimitFilter concurrencyLimitFilter = new ConcurrencyLimitFilter(meterRegistry, true, 2, 1, 4, 100, now::get);
+
+    @Test
+    void whenLimitIsReachedThenFurtherMovementsAreShed() throws Exception {
+        MockHttpServletResponse[] nestedResponses = new MockHttpServletResponse[2];
+
+        perform(INCREMENT_PATH, (first, firstResponse) ->
+                nestedResponses[0] = perform(INCREMENT_PATH, (second, secondResponse) ->
+                        nestedResponses[1] = perform(INCREMENT_PATH, (third, thirdResponse) -> {
+                            throw new AssertionError("the third movement must be shed");
+                        })));
+
+        assertThat(nestedResponses[1].getStatus(), is(equalTo(HttpStatus.SERVICE_UNAVAILABLE.value())));
+        assertThat(nestedResponses[1].getHeader(HttpHeaders.RETRY_AFTER), is(equalTo("1")));
+        assertThat(meterRegistry.counter("cigarro.concurrency.rejected").count(), is(equalTo(1.0)));
+        assertThat(meterRegistry.get("cigarro.concurrency.in-flight").gauge().value(), is(equalTo(0.0)));
+    }
+
+    @Test
+    void whenMovementsAreSlowThenTheLimitShrinksOncePerRound() throws Exception {
+        now.addAndGet(1);
+        perform(INCREMENT_PATH, (request, response) ->
+                perform(INCREMENT_PATH, (nestedRequest, nestedResponse) -> now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500))));
+
+        assertThat(concurrencyLimitFilter.limit(), is(equalTo(1)));
+        assertThat(meterRegistry.get("cigarro.concurrency.limit").gauge().value(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenMovementsAreFastThenTheLimitGrowsWhileItIsUsedUpToItsMax() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            perform(INCREMENT_PATH, (request, response) -> now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+
+        assertThat(concurrencyLimitFilter.limit(), is(equalTo(3)));
+
+        for (int i = 0; i < 3; i++) {
+            perform(INCREMENT_PATH, (request, response) ->
+                    perform(INCREMENT_PATH, (nestedRequest, nestedResponse) -> now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10))));
+        }
+
+        assertThat(concurrencyLimitFilter.limit(), is(equalTo(4)));
+    }
+
+    @Test
+    void whenRequestIsNotAStockMovementThenItIsNeverShed() throws Exception {
+        MockHttpServletResponse[] nestedResponse = new MockHttpServletResponse[1];
+
+        perform(INCREMENT_PATH, (first, firstResponse) ->
+                perform(INCREMENT_PATH, (second, secondResponse) ->
+                        nestedResponse[0] = perform("/api/cigarros", (third, thirdResponse) -> { })));
+
+        assertThat(nestedResponse[0].getStatus(), is(equalTo(HttpStatus.OK.value())));
+    }
+
+    private MockHttpServletResponse perform(String path, FilterChain chain) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            concurrencyLimitFilter.doFilter(request, response, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+}
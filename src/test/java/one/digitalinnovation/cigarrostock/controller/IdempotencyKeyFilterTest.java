@@ -0,0 +1,248 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.service.CigarroCsvService;
+import one.digitalinnovation.cigarrostock.service.CigarroReportService;
+import one.digitalinnovation.cigarrostock.service.CigarroSearchIndex;
+import one.digitalinnovation.cigarrostock.service.CigarroService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static one.digitalinnovation.cigarrostock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyKeyFilterTest {
+
+    private static final String CIGARRO_API_URL_PATH = "/api/cigarros";
+    private static final long VALID_CIGARRO_ID = 1L;
+    private static final String IDEMPOTENCY_KEY = "7d1c2f36-scanner-42";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static final int MAX_BODY_BYTES = 1024;
+
+    private final IdempotencyKeyFilter idempotencyKeyFilter = new IdempotencyKeyFilter(meterRegistry,
+            new ClientIdentityResolver(Collections.emptySet()), 100, 60, MAX_BODY_BYTES);
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private CigarroService cigarroService;
+
+    @Mock
+    private CigarroReportService cigarroReportService;
+
+    @Mock
+    private CigarroCsvService cigarroCsvService;
+
+    @Mock
+    private CigarroSearchIndex cigarroSearchIndex;
+
+    @Mock
+    private LowStockAlertBroadcaster lowStockAlertBroadcaster;
+
+    @Mock
+    private CigarroChangeFeed cigarroChangeFeed;
+
+    @Spy
+    private CigarroCatalogueVersion cigarroCatalogueVersion = new CigarroCatalogueVersion();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private CigarroController cigarroController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(cigarroController)
+                .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .addFilters(idempotencyKeyFilter)
+                .build();
+    }
+
+    @Test
+    void whenIncrementIsRetriedWithTheSameKeyThenItIsAppliedOnceAndReplayed() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().quantity(20).version(4L).build().toCigarroDTO();
+
+        // when
+        when(cigarroService.increment(VALID_CIGARRO_ID, 10)).thenReturn(cigarroDTO);
+
+        // then
+        mockMvc.perform(increment(10, IDEMPOTENCY_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(20)));
+        mockMvc.perform(increment(10, IDEMPOTENCY_KEY))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED, "true"))
+                .andExpect(header().string("ETag", "\"" + cigarroCatalogueVersion.eTag(cigarroDTO.getId(), 4L) + "\""))
+                .andExpect(jsonPath("$.quantity", is(20)));
+        verify(cigarroService, times(1)).increment(VALID_CIGARRO_ID, 10);
+        assertThat(meterRegistry.counter("cigarro.idempotency.replayed").count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenRejectedIncrementIsRetriedThenTheRejectionIsReplayed() throws Exception {
+        // when
+        when(cigarroService.increment(VALID_CIGARRO_ID, 80)).thenThrow(CigarroStockExceededException.class);
+
+        // then
+        mockMvc.perform(increment(80, IDEMPOTENCY_KEY)).andExpect(status().isBadRequest());
+        mockMvc.perform(increment(80, IDEMPOTENCY_KEY)).andExpect(status().isBadRequest());
+        verify(cigarroService, times(1)).increment(VALID_CIGARRO_ID, 80);
+    }
+
+    @Test
+    void whenKeyIsReusedForAnotherRequestThenUnprocessableEntityStatusIsReturned() throws Exception {
+        // when
+        when(cigarroService.increment(VALID_CIGARRO_ID, 10)).thenReturn(CigarroDTOBuilder.builder().build().toCigarroDTO());
+
+        // then
+        mockMvc.perform(increment(10, IDEMPOTENCY_KEY)).andExpect(status().isOk());
+        mockMvc.perform(increment(11, IDEMPOTENCY_KEY)).andExpect(status().isUnprocessableEntity());
+        verify(cigarroService, times(1)).increment(any(), any(Integer.class));
+    }
+
+    @Test
+    void whenMovementsConflictThenTheirRetryIsAppliedAgain() throws Exception {
+        // given
+        String movements = "{\"movements\":[{\"id\":1,\"quantity\":5}]}";
+
+        // when
+        when(cigarroService.applyMovements(any())).thenThrow(CigarroConcurrentUpdateException.class).thenReturn(Collections.emptyList());
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + "/movements")
+                .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, IDEMPOTENCY_KEY)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movements))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + "/movements")
+                .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, IDEMPOTENCY_KEY)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movements))
+                .andExpect(status().isOk());
+        verify(cigarroService, times(2)).applyMovements(any());
+    }
+
+    @Test
+    void whenTwoClientsSendTheSameKeyThenEachRequestIsApplied() throws Exception {
+        // when
+        when(cigarroService.increment(VALID_CIGARRO_ID, 10)).thenReturn(CigarroDTOBuilder.builder().build().toCigarroDTO());
+
+        // then
+        mockMvc.perform(increment(10, IDEMPOTENCY_KEY).with(fromAddress("10.0.0.2"))).andExpect(status().isOk());
+        mockMvc.perform(increment(10, IDEMPOTENCY_KEY).with(fromAddress("10.0.0.3")))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+        verify(cigarroService, times(2)).increment(VALID_CIGARRO_ID, 10);
+    }
+
+    @Test
+    void whenBodyIsOverTheLimitThenPayloadTooLargeStatusIsReturned() throws Exception {
+        // given
+        byte[] body = new byte[MAX_BODY_BYTES + 1];
+        Arrays.fill(body, (byte) ' ');
+
+        // then
+        mockMvc.perform(post(CIGARRO_API_URL_PATH + "/movements")
+                .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, IDEMPOTENCY_KEY)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isPayloadTooLarge());
+        verifyNoInteractions(cigarroService);
+    }
+
+    @Test
+    void whenTheControllerReadsTheBodyAsynchronouslyThenItIsToldThatIsNotSupported() throws Exception {
+        idempotencyKeyFilter.doFilter(incrementRequest(), new MockHttpServletResponse(), (request, response) -> {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> request.getInputStream().setReadListener(null));
+            assertThat(e.getMessage(), containsString("Async reads are not supported"));
+        });
+    }
+
+    @Test
+    void whenNoKeyIsSentThenEveryIncrementIsApplied() throws Exception {
+        // when
+        when(cigarroService.increment(VALID_CIGARRO_ID, 10)).thenReturn(CigarroDTOBuilder.builder().build().toCigarroDTO());
+
+        // then
+        mockMvc.perform(increment(10, null)).andExpect(status().isOk());
+        mockMvc.perform(increment(10, null)).andExpect(status().isOk());
+        verify(cigarroService, times(2)).increment(VALID_CIGARRO_ID, 10);
+    }
+
+    @Test
+    void whenRetryArrivesWhileTheFirstRequestIsRunningThenConflictStatusIsReturned() throws Exception {
+        // given
+        MockHttpServletResponse retryResponse = new MockHttpServletResponse();
+
+        // then
+        idempotencyKeyFilter.doFilter(incrementRequest(), new MockHttpServletResponse(),
+                (request, response) -> idempotencyKeyFilter.doFilter(incrementRequest(), retryResponse, (retry, ignored) -> {
+                    throw new AssertionError("the retry must not reach the controller");
+                }));
+
+        assertThat(retryResponse.getStatus(), is(equalTo(HttpStatus.CONFLICT.value())));
+    }
+
+    private MockHttpServletRequestBuilder increment(int quantity, String idempotencyKey) {
+        MockHttpServletRequestBuilder request = patch(CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(quantity)));
+        return idempotencyKey == null ? request : request.header(IdempotencyKeyFilter.IDEMPOTENCY_KEY, idempotencyKey);
+    }
+
+    private static RequestPostProcessor fromAddress(String remoteAddress) {
+        return request -> {
+            request.setRemoteAddr(remoteAddress);
+            return request;
+        };
+    }
+
+    private static MockHttpServletRequest incrementRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", CIGARRO_API_URL_PATH + "/" + VALID_CIGARRO_ID + "/increment");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY, IDEMPOTENCY_KEY);
+        request.setContent(asJsonString(new QuantityDTO(10)).getBytes());
+        return request;
+    }
+}
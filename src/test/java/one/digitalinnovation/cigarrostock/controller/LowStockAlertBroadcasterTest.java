@@ -0,0 +1,119 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.cigarrostock.dto.LowStockAlertDTO;
+import one.digitalinnovation.cigarrostock.event.LowStockEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LowStockAlertBroadcasterTest {
+
+    private static final int SUBSCRIBER_BUFFER_SIZE = 2;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService senders = Executors.newFixedThreadPool(2);
+
+    private final LowStockAlertBroadcaster lowStockAlertBroadcaster = new LowStockAlertBroadcaster(meterRegistry, SUBSCRIBER_BUFFER_SIZE, 0L, senders);
+
+    @AfterEach
+    void tearDown() {
+        senders.shutdownNow();
+    }
+
+    @Test
+    void whenAlertIsBroadcastThenEverySubscriberReceivesIt() throws Exception {
+        CountingEmitter first = new CountingEmitter();
+        CountingEmitter second = new CountingEmitter();
+        lowStockAlertBroadcaster.subscribe(first);
+        lowStockAlertBroadcaster.subscribe(second);
+
+        broadcastAlerts(2);
+
+        assertThat(awaitSent(first, 2), is(equalTo(2)));
+        assertThat(awaitSent(second, 2), is(equalTo(2)));
+    }
+
+    @Test
+    void whenSubscriberIsSlowThenBroadcastingDoesNotWaitAndTheSubscriberIsDropped() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountingEmitter slowEmitter = new CountingEmitter(unblock);
+        CountingEmitter emitter = new CountingEmitter();
+        lowStockAlertBroadcaster.subscribe(slowEmitter);
+        lowStockAlertBroadcaster.subscribe(emitter);
+
+        broadcastAlerts(1);
+        assertTrue(slowEmitter.sending.await(1, TimeUnit.SECONDS));
+        for (int alerts = 2; alerts <= SUBSCRIBER_BUFFER_SIZE + 2; alerts++) {
+            assertThat(awaitSent(emitter, alerts - 1), is(equalTo(alerts - 1)));
+            broadcastAlerts(1);
+        }
+
+        assertTrue(slowEmitter.completed);
+        assertThat(awaitSent(emitter, SUBSCRIBER_BUFFER_SIZE + 2), is(equalTo(SUBSCRIBER_BUFFER_SIZE + 2)));
+        unblock.countDown();
+        assertThat(lowStockAlertBroadcaster.subscriberCount(), is(equalTo(1)));
+        assertThat(meterRegistry.counter("cigarro.alerts.dropped").count(), is(equalTo(1.0)));
+    }
+
+    private void broadcastAlerts(int alerts) {
+        for (int i = 0; i < alerts; i++) {
+            lowStockAlertBroadcaster.broadcast(new LowStockEvent(this, new LowStockAlertDTO(1L, "Marlboro", i, 10, Instant.now())));
+        }
+    }
+
+    private int awaitSent(CountingEmitter emitter, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (emitter.sent.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return emitter.sent.get();
+    }
+
+    private static class CountingEmitter extends SseEmitter {
+
+        private final AtomicInteger sent = new AtomicInteger();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch unblock;
+        private volatile boolean completed;
+
+        CountingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        CountingEmitter(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
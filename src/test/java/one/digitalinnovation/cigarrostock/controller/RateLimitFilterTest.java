@@ -0,0 +1,138 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+
+    private final AtomicInteger forwarded = new AtomicInteger();
+
+    private static final String TRUSTED_PROXY = "10.0.0.1";
+
+    private final RateLimitFilter rateLimitFilter = new RateLimitFilter(meterRegistry,
+            new ClientIdentityResolver(Collections.singleton(TRUSTED_PROXY)), true, 10, 5, 100, now::get);
+
+    @Test
+    void whenClientExceedsItsBurstThenItIsRejectedUntilTokensAreRefilled() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(perform("/api/cigarros", "pos-1").getStatus(), is(equalTo(HttpStatus.OK.value())));
+        }
+
+        MockHttpServletResponse rejected = perform("/api/cigarros", "pos-1");
+
+        assertThat(rejected.getStatus(), is(equalTo(HttpStatus.TOO_MANY_REQUESTS.value())));
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER), is(equalTo("1")));
+        assertThat(meterRegistry.counter("cigarro.rate-limit.rejected").count(), is(equalTo(1.0)));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat(perform("/api/cigarros", "pos-1").getStatus(), is(equalTo(HttpStatus.OK.value())));
+        assertThat(perform("/api/cigarros", "pos-1").getStatus(), is(equalTo(HttpStatus.TOO_MANY_REQUESTS.value())));
+        assertThat(forwarded.get(), is(equalTo(6)));
+    }
+
+    @Test
+    void whenOneClientIsLimitedThenOthersAreNot() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            perform("/api/cigarros", "pos-1");
+        }
+
+        assertThat(perform("/api/cigarros", "pos-2").getStatus(), is(equalTo(HttpStatus.OK.value())));
+        assertThat(perform("/api/cigarros", null).getStatus(), is(equalTo(HttpStatus.OK.value())));
+    }
+
+    @Test
+    void whenClientIdComesFromAnUntrustedAddressThenTheAddressIsLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(perform("/api/cigarros", "203.0.113.7", "spoofed-" + i).getStatus(), is(equalTo(HttpStatus.OK.value())));
+        }
+
+        assertThat(perform("/api/cigarros", "203.0.113.7", "spoofed-5").getStatus(), is(equalTo(HttpStatus.TOO_MANY_REQUESTS.value())));
+        assertThat(perform("/api/cigarros", "203.0.113.8", "spoofed-5").getStatus(), is(equalTo(HttpStatus.OK.value())));
+    }
+
+    @Test
+    void whenRequestIsAuthenticatedThenItsPrincipalIsLimitedWhateverTheClientId() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request("/api/cigarros", TRUSTED_PROXY, "pos-" + i);
+            request.setUserPrincipal(() -> "store-1");
+            assertThat(perform(request).getStatus(), is(equalTo(HttpStatus.OK.value())));
+        }
+
+        MockHttpServletRequest request = request("/api/cigarros", TRUSTED_PROXY, "pos-5");
+        request.setUserPrincipal(() -> "store-1");
+
+        assertThat(perform(request).getStatus(), is(equalTo(HttpStatus.TOO_MANY_REQUESTS.value())));
+        assertThat(perform("/api/cigarros", "pos-5").getStatus(), is(equalTo(HttpStatus.OK.value())));
+    }
+
+    @Test
+    void whenRequestIsOutsideTheApiThenItIsNotLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThat(perform("/actuator/health", "pos-1").getStatus(), is(equalTo(HttpStatus.OK.value())));
+        }
+    }
+
+    @Test
+    void whenTokensAreTakenConcurrentlyThenNoMoreThanTheBurstIsGranted() throws Exception {
+        RateLimitFilter.TokenBucket bucket = new RateLimitFilter.TokenBucket(0);
+        AtomicInteger granted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.tryAcquire(0, TimeUnit.MILLISECONDS.toNanos(100), 50) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(granted.get(), is(equalTo(50)));
+        assertThat(RateLimitFilter.toRetryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(1500)), is(equalTo(2L)));
+    }
+
+    private MockHttpServletResponse perform(String path, String clientId) throws Exception {
+        return perform(request(path, TRUSTED_PROXY, clientId));
+    }
+
+    private MockHttpServletResponse perform(String path, String remoteAddress, String clientId) throws Exception {
+        return perform(request(path, remoteAddress, clientId));
+    }
+
+    private MockHttpServletRequest request(String path, String remoteAddress, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr(remoteAddress);
+        if (clientId != null) {
+            request.addHeader(ClientIdentityResolver.CLIENT_ID, clientId);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request, response, (filteredRequest, filteredResponse) -> forwarded.incrementAndGet());
+        return response;
+    }
+}
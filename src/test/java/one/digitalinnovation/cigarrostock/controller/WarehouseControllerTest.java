@@ -0,0 +1,129 @@
+package one.digitalinnovation.cigarrostock.controller;
+
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.exception.WarehouseNotFoundException;
+import one.digitalinnovation.cigarrostock.service.WarehouseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
+
+import java.util.Arrays;
+
+import static one.digitalinnovation.cigarrostock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class WarehouseControllerTest {
+
+    private static final String WAREHOUSE_API_URL_PATH = "/api/warehouses";
+    private static final long CIGARRO_ID = 1L;
+    private static final long DEPOT_ID = 1L;
+    private static final long STORE_ID = 2L;
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private WarehouseService warehouseService;
+
+    @InjectMocks
+    private WarehouseController warehouseController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(warehouseController)
+                .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .build();
+    }
+
+    @Test
+    void whenPOSTIsCalledThenAWarehouseIsCreated() throws Exception {
+        // given
+        WarehouseDTO warehouseDTO = new WarehouseDTO(null, "DEPOT", "Central depot");
+
+        // when
+        when(warehouseService.createWarehouse(warehouseDTO)).thenReturn(new WarehouseDTO(DEPOT_ID, "DEPOT", "Central depot"));
+
+        // then
+        mockMvc.perform(post(WAREHOUSE_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(warehouseDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is((int) DEPOT_ID)))
+                .andExpect(jsonPath("$.code", is("DEPOT")));
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementAtAWarehouseThenTheWarehouseStockIsReturned() throws Exception {
+        // when
+        when(warehouseService.increment(STORE_ID, CIGARRO_ID, 10)).thenReturn(new WarehouseStockDTO(CIGARRO_ID, STORE_ID, 10));
+
+        // then
+        mockMvc.perform(patch(WAREHOUSE_API_URL_PATH + "/" + STORE_ID + "/stock/" + CIGARRO_ID + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(10))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.warehouseId", is((int) STORE_ID)))
+                .andExpect(jsonPath("$.quantity", is(10)));
+    }
+
+    @Test
+    void whenPATCHIsCalledWithAnUnknownWarehouseThenNotFoundStatusIsReturned() throws Exception {
+        // when
+        when(warehouseService.decrement(STORE_ID, CIGARRO_ID, 10)).thenThrow(new WarehouseNotFoundException(STORE_ID));
+
+        // then
+        mockMvc.perform(patch(WAREHOUSE_API_URL_PATH + "/" + STORE_ID + "/stock/" + CIGARRO_ID + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(10))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPOSTTransferIsCalledThenBothWarehouseStocksAreReturned() throws Exception {
+        // given
+        StockTransferDTO transfer = new StockTransferDTO(CIGARRO_ID, DEPOT_ID, STORE_ID, 5);
+
+        // when
+        when(warehouseService.transfer(transfer)).thenReturn(Arrays.asList(
+                new WarehouseStockDTO(CIGARRO_ID, DEPOT_ID, 15), new WarehouseStockDTO(CIGARRO_ID, STORE_ID, 5)));
+
+        // then
+        mockMvc.perform(post(WAREHOUSE_API_URL_PATH + "/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(transfer)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].quantity", is(15)))
+                .andExpect(jsonPath("$[1].quantity", is(5)));
+    }
+
+    @Test
+    void whenPOSTTransferIsCalledWithinTheSameWarehouseThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        StockTransferDTO transfer = new StockTransferDTO(CIGARRO_ID, DEPOT_ID, DEPOT_ID, 5);
+
+        // then
+        mockMvc.perform(post(WAREHOUSE_API_URL_PATH + "/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(transfer)))
+                .andExpect(status().isBadRequest());
+        verify(warehouseService, never()).transfer(any());
+    }
+}
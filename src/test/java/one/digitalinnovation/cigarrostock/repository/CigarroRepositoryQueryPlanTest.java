@@ -0,0 +1,148 @@
+package one.digitalinnovation.cigarrostock.repository;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroFilterDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "one.digitalinnovation.cigarrostock.repository.CigarroRepositoryQueryPlanTest$RecordingStatementInspector")
+public class CigarroRepositoryQueryPlanTest {
+
+    private static final String FILTER_BRAND = "Filter Brand";
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Cigarro> cigarros;
+
+    @BeforeEach
+    void setUp() {
+        cigarros = cigarroRepository.saveAll(Arrays.asList(
+                new Cigarro(null, "Filter Low", FILTER_BRAND, 50, 5, CigarroType.BURLEY, null, null),
+                new Cigarro(null, "Filter High", FILTER_BRAND, 50, 40, CigarroType.BURLEY, null, null),
+                new Cigarro(null, "Filter Other Type", FILTER_BRAND, 50, 40, CigarroType.ORIENTAL, null, null)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cigarroRepository.deleteAll(cigarros);
+    }
+
+    @Test
+    void whenFilteringByBrandTypeAndQuantityRangeThenOnlyMatchingCigarrosAreReturned() {
+        CigarroFilterDTO filter = CigarroFilterDTO.builder()
+                .brand(FILTER_BRAND)
+                .type(CigarroType.BURLEY)
+                .minQuantity(10)
+                .maxQuantity(50)
+                .build();
+
+        List<String> names = cigarroRepository.findAll(CigarroSpecifications.matching(filter), Sort.by("id")).stream()
+                .map(Cigarro::getName)
+                .collect(Collectors.toList());
+
+        assertThat(names, contains("Filter High"));
+    }
+
+    @Test
+    void whenFilteringByBrandThenTheBrandIndexIsUsed() {
+        CigarroFilterDTO filter = CigarroFilterDTO.builder()
+                .brand(FILTER_BRAND)
+                .type(CigarroType.BURLEY)
+                .minQuantity(10)
+                .maxQuantity(50)
+                .build();
+
+        List<String> plans = explainFilter(filter, FILTER_BRAND, CigarroType.BURLEY.name());
+
+        assertThat(plans, everyItem(containsString("IDX_CIGARRO_BRAND_TYPE_QUANTITY")));
+        assertThat(plans, everyItem(not(containsString(TABLE_SCAN))));
+    }
+
+    @Test
+    void whenFilteringByTypeAndQuantityRangeThenTheTypeIndexIsUsed() {
+        CigarroFilterDTO filter = CigarroFilterDTO.builder()
+                .type(CigarroType.BURLEY)
+                .minQuantity(10)
+                .build();
+
+        List<String> plans = explainFilter(filter, CigarroType.BURLEY.name());
+
+        assertThat(plans, everyItem(containsString("IDX_CIGARRO_TYPE_QUANTITY")));
+        assertThat(plans, everyItem(not(containsString(TABLE_SCAN))));
+    }
+
+    @Test
+    void whenFilteringByQuantityRangeOnlyThenTheQuantityIndexIsUsed() {
+        CigarroFilterDTO filter = CigarroFilterDTO.builder()
+                .minQuantity(10)
+                .maxQuantity(50)
+                .build();
+
+        List<String> plans = explainFilter(filter);
+
+        assertThat(plans, everyItem(containsString("IDX_CIGARRO_QUANTITY")));
+        assertThat(plans, everyItem(not(containsString(TABLE_SCAN))));
+    }
+
+    /**
+     * Runs the filter the way the API does, one full page so the count query is issued too, and explains every
+     * statement Hibernate sent for it. Hibernate inlines the quantities, so only the brand and type are bound, in
+     * order; any parameter left is the limit.
+     */
+    private List<String> explainFilter(CigarroFilterDTO filter, Object... boundCriteria) {
+        RecordingStatementInspector.STATEMENTS.clear();
+        cigarroRepository.findAll(CigarroSpecifications.matching(filter), PageRequest.of(0, 1));
+        List<String> statements = RecordingStatementInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains("from cigarro "))
+                .collect(Collectors.toList());
+        assertThat(statements, hasSize(2));
+
+        return statements.stream()
+                .map(sql -> explain(sql, boundCriteria))
+                .collect(Collectors.toList());
+    }
+
+    private String explain(String sql, Object[] boundCriteria) {
+        Object[] parameters = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(parameters, 1);
+        System.arraycopy(boundCriteria, 0, parameters, 0, boundCriteria.length);
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, parameters);
+    }
+
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportErrorDTO;
+import one.digitalinnovation.cigarrostock.dto.CigarroImportResultDTO;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroCsvHeaderException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CigarroCsvServiceTest {
+
+    private static final String HEADER = "name,brand,max,quantity,type,reorderThreshold\n";
+
+    private static final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+
+    @Mock
+    private CigarroService cigarroService;
+
+    private CigarroCsvService cigarroCsvService;
+
+    @BeforeEach
+    void setUp() {
+        cigarroCsvService = new CigarroCsvService(cigarroService, validatorFactory.getValidator(), 2, 10);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void whenValidLinesAreImportedThenTheyAreCreatedInBatches() throws Exception {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,VIRGINIA,5\n"
+                + "\"Derby, \"\"Blue\"\"\",Souza Cruz,100,20,BURLEY,\n"
+                + "Marlboro,Philip Morris,30,0,ORIENTAL,\n";
+
+        // when
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Collections.emptySet());
+
+        // then
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult, is(equalTo(new CigarroImportResultDTO(3, 0, Collections.emptyList()))));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CigarroDTO>> batches = ArgumentCaptor.forClass(List.class);
+        verify(cigarroService, times(2)).createUnregisteredCigarros(batches.capture());
+        CigarroDTO quotedCigarroDTO = batches.getAllValues().get(0).get(1);
+        assertThat(quotedCigarroDTO.getName(), is(equalTo("Derby, \"Blue\"")));
+        assertThat(quotedCigarroDTO.getType(), is(equalTo(CigarroType.BURLEY)));
+        assertThat(quotedCigarroDTO.getReorderThreshold(), is(equalTo(null)));
+    }
+
+    @Test
+    void whenInvalidLinesAreImportedThenTheyAreReportedWithTheirLineNumber() throws Exception {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,fifty,10,VIRGINIA,\n"
+                + "Brahma,Ambev,50,10,CUBAN,\n"
+                + "Brahma,Ambev,600,10,VIRGINIA,\n"
+                + "Brahma,Ambev,50\n"
+                + "Derby,Souza Cruz,50,10,VIRGINIA,\n"
+                + "Derby,Souza Cruz,50,10,VIRGINIA,\n"
+                + "\"Brahma,Ambev,50,10,VIRGINIA,\n"
+                + "Brahma,Ambev,50,10,VIRGINIA,\n";
+
+        // when
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Collections.emptySet());
+
+        // then
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult.getImported(), is(equalTo(1L)));
+        assertThat(importResult.getRejected(), is(equalTo(6L)));
+        assertThat(importResult.getErrors(), contains(
+                new CigarroImportErrorDTO(2, "max: must be a whole number"),
+                new CigarroImportErrorDTO(3, "type: must be one of " + Arrays.toString(CigarroType.values())),
+                new CigarroImportErrorDTO(4, "max: must be less than or equal to 500"),
+                new CigarroImportErrorDTO(5, "expected 6 fields but found 3"),
+                new CigarroImportErrorDTO(7, new CigarroAlreadyRegisteredException("Derby").getMessage()),
+                new CigarroImportErrorDTO(8, "unterminated quoted field")));
+    }
+
+    @Test
+    void whenQuotedFieldSpansLinesThenItsLineBreaksAreKeptAndLinesAreStillNumbered() throws Exception {
+        // given
+        String csv = HEADER
+                + "\"Derby\r\nBlue\",\"Souza\nCruz\",50,10,VIRGINIA,\r\n"
+                + "Brahma,Ambev,fifty,10,VIRGINIA,\r\n";
+
+        // when
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Collections.emptySet());
+
+        // then
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult.getErrors(), contains(new CigarroImportErrorDTO(5, "max: must be a whole number")));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CigarroDTO>> batch = ArgumentCaptor.forClass(List.class);
+        verify(cigarroService).createUnregisteredCigarros(batch.capture());
+        assertThat(batch.getValue().get(0).getName(), is(equalTo("Derby\r\nBlue")));
+        assertThat(batch.getValue().get(0).getBrand(), is(equalTo("Souza\nCruz")));
+    }
+
+    @Test
+    void whenImportedCigarroIsAlreadyRegisteredThenItsLineIsRejected() throws Exception {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,VIRGINIA,\n"
+                + "Derby,Souza Cruz,50,10,VIRGINIA,\n";
+
+        // when
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Set.of("Derby"));
+
+        // then
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult, is(equalTo(new CigarroImportResultDTO(1, 1, Collections.singletonList(
+                new CigarroImportErrorDTO(3, new CigarroAlreadyRegisteredException("Derby").getMessage()))))));
+    }
+
+    @Test
+    void whenBatchRacesAConcurrentCreationThenItsLinesAreCreatedOneByOne() throws Exception {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,VIRGINIA,\n"
+                + "Derby,Souza Cruz,50,10,VIRGINIA,\n";
+
+        // when
+        when(cigarroService.createUnregisteredCigarros(any())).thenThrow(new CigarroAlreadyRegisteredException("Brahma, Derby"));
+        when(cigarroService.createCigarro(any())).thenAnswer(invocation -> {
+            CigarroDTO cigarroDTO = invocation.getArgument(0);
+            if (cigarroDTO.getName().equals("Derby")) {
+                throw new CigarroAlreadyRegisteredException("Derby");
+            }
+            return cigarroDTO;
+        });
+
+        // then
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult.getImported(), is(equalTo(1L)));
+        assertThat(importResult.getErrors(), contains(new CigarroImportErrorDTO(3, new CigarroAlreadyRegisteredException("Derby").getMessage())));
+    }
+
+    @Test
+    void whenMoreLinesAreRejectedThanReportedThenAllAreCounted() throws Exception {
+        // given
+        CigarroCsvService limitedCsvService = new CigarroCsvService(cigarroService, validatorFactory.getValidator(), 2, 1);
+        String csv = HEADER
+                + "Brahma,Ambev,fifty,10,VIRGINIA,\n"
+                + "Derby,Souza Cruz,fifty,10,VIRGINIA,\n";
+
+        // then
+        CigarroImportResultDTO importResult = limitedCsvService.importCsv(new StringReader(csv));
+
+        assertThat(importResult.getRejected(), is(equalTo(2L)));
+        assertThat(importResult.getErrors(), hasSize(1));
+    }
+
+    @Test
+    void whenHeaderLacksRequiredColumnsThenAnExceptionShouldBeThrown() {
+        assertThrows(CigarroCsvHeaderException.class, () -> cigarroCsvService.importCsv(new StringReader("name,brand,max\nBrahma,Ambev,50\n")));
+        assertThrows(CigarroCsvHeaderException.class, () -> cigarroCsvService.importCsv(new StringReader("")));
+    }
+
+    @Test
+    void whenCigarroWithLineBreaksIsExportedThenItCanBeImportedBack() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().name("Derby\nBlue").brand("Souza\r\nCruz").build().toCigarroDTO();
+        StringWriter writer = new StringWriter();
+
+        // when
+        doAnswer(invocation -> {
+            Consumer<CigarroDTO> consumer = invocation.getArgument(0);
+            consumer.accept(cigarroDTO);
+            return null;
+        }).when(cigarroService).streamAll(any());
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Collections.emptySet());
+
+        // then
+        cigarroCsvService.exportCsv(writer);
+
+        assertThat(writer.toString(), is(equalTo("id,name,brand,max,quantity,type,reorderThreshold\n"
+                + "1,\"Derby\nBlue\",\"Souza\r\nCruz\",50,10,VIRGINIA,\n")));
+        CigarroImportResultDTO importResult = cigarroCsvService.importCsv(new StringReader(writer.toString()));
+        assertThat(importResult, is(equalTo(new CigarroImportResultDTO(1, 0, Collections.emptyList()))));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CigarroDTO>> batch = ArgumentCaptor.forClass(List.class);
+        verify(cigarroService).createUnregisteredCigarros(batch.capture());
+        cigarroDTO.setId(null);
+        assertThat(batch.getValue(), contains(cigarroDTO));
+    }
+
+    @Test
+    void whenCatalogueIsExportedThenItCanBeImportedBack() throws Exception {
+        // given
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().name("Derby, \"Blue\"").reorderThreshold(5).build().toCigarroDTO();
+        StringWriter writer = new StringWriter();
+
+        // when
+        doAnswer(invocation -> {
+            Consumer<CigarroDTO> consumer = invocation.getArgument(0);
+            consumer.accept(cigarroDTO);
+            return null;
+        }).when(cigarroService).streamAll(any());
+        when(cigarroService.createUnregisteredCigarros(any())).thenReturn(Collections.emptySet());
+
+        // then
+        cigarroCsvService.exportCsv(writer);
+
+        assertThat(writer.toString(), is(equalTo("id,name,brand,max,quantity,type,reorderThreshold\n"
+                + "1,\"Derby, \"\"Blue\"\"\",Ambev,50,10,VIRGINIA,5\n")));
+        assertThat(cigarroCsvService.importCsv(new StringReader("﻿" + writer)).getImported(), is(equalTo(1L)));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CigarroDTO>> batch = ArgumentCaptor.forClass(List.class);
+        verify(cigarroService).createUnregisteredCigarros(batch.capture());
+        cigarroDTO.setId(null);
+        assertThat(batch.getValue(), contains(cigarroDTO));
+    }
+}
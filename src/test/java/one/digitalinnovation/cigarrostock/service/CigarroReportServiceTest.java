@@ -0,0 +1,97 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroCapacityDTO;
+import one.digitalinnovation.cigarrostock.dto.StockSummaryDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest
+public class CigarroReportServiceTest {
+
+    private static final String REPORT_BRAND = "Report Brand";
+
+    @Autowired
+    private CigarroReportService cigarroReportService;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    private List<Cigarro> cigarros;
+
+    private StockSummaryDTO periqueBefore;
+
+    @BeforeEach
+    void setUp() {
+        periqueBefore = findGroup(cigarroReportService.summarizeByType(), CigarroType.PERIQUE.name());
+        cigarros = cigarroRepository.saveAll(Arrays.asList(
+                new Cigarro(null, "Report Full", REPORT_BRAND, 50, 50, CigarroType.PERIQUE, null, null),
+                new Cigarro(null, "Report Almost", REPORT_BRAND, 50, 45, CigarroType.PERIQUE, null, null),
+                new Cigarro(null, "Report Half", REPORT_BRAND, 100, 50, CigarroType.PERIQUE, null, null),
+                new Cigarro(null, "Report Discontinued", REPORT_BRAND, 0, 0, CigarroType.PERIQUE, null, null)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cigarroRepository.deleteAll(cigarros);
+    }
+
+    @Test
+    void whenBrandReportIsRequestedThenUnitsAndFillRatioAreSummedPerBrand() {
+        StockSummaryDTO summary = findGroup(cigarroReportService.summarizeByBrand(), REPORT_BRAND);
+
+        assertThat(summary.getSkus(), is(equalTo(4L)));
+        assertThat(summary.getQuantity(), is(equalTo(145L)));
+        assertThat(summary.getMax(), is(equalTo(200L)));
+        assertThat(summary.getFillRatio(), is(equalTo(0.725)));
+    }
+
+    @Test
+    void whenTypeReportIsRequestedThenUnitsAreSummedPerType() {
+        StockSummaryDTO summary = findGroup(cigarroReportService.summarizeByType(), CigarroType.PERIQUE.name());
+
+        assertThat(summary.getSkus() - periqueBefore.getSkus(), is(equalTo(4L)));
+        assertThat(summary.getQuantity() - periqueBefore.getQuantity(), is(equalTo(145L)));
+    }
+
+    @Test
+    void whenCapacityReportIsRequestedThenOnlyCigarrosAtOrAboveThePercentageAreReturnedFullestFirst() {
+        List<String> names = cigarroReportService.findFilledAtLeast(90, 100).stream()
+                .filter(capacity -> capacity.getBrand().equals(REPORT_BRAND))
+                .map(CigarroCapacityDTO::getName)
+                .collect(Collectors.toList());
+
+        assertThat(names, contains("Report Full", "Report Almost"));
+    }
+
+    @Test
+    void whenCapacityReportAsksForMoreThanAPageThenCigarrosWithoutCapacityAreSkippedAndTheSizeIsCapped() {
+        List<String> names = cigarroReportService.findFilledAtLeast(0, Integer.MAX_VALUE).stream()
+                .filter(capacity -> capacity.getBrand().equals(REPORT_BRAND))
+                .map(CigarroCapacityDTO::getName)
+                .collect(Collectors.toList());
+
+        assertThat(names, contains("Report Full", "Report Almost", "Report Half"));
+    }
+
+    private StockSummaryDTO findGroup(List<StockSummaryDTO> summaries, String group) {
+        return summaries.stream()
+                .filter(summary -> summary.getGroup().equals(group))
+                .findFirst()
+                .orElse(new StockSummaryDTO(group, 0L, 0L, 0L));
+    }
+}
@@ -0,0 +1,152 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.service.CigarroReservationLedger.Reservation;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CigarroReservationLedgerTest {
+
+    private static final long CIGARRO_ID = 1L;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T10:00:00Z"), ZoneOffset.UTC);
+
+    private final CigarroReservationLedger reservationLedger = new CigarroReservationLedger(Duration.ofSeconds(5), clock);
+
+    @Test
+    void whenHoldFitsInStockThenQuantityIsReserved() {
+        Optional<Reservation> reservation = reservationLedger.hold(CIGARRO_ID, 6, 10);
+
+        assertTrue(reservation.isPresent());
+        assertThat(reservationLedger.reservedQuantity(CIGARRO_ID), is(equalTo(6)));
+        assertFalse(reservationLedger.hold(CIGARRO_ID, 5, 10).isPresent());
+    }
+
+    @Test
+    void whenReservationIsReleasedThenQuantityIsGivenBack() {
+        Reservation reservation = reservationLedger.hold(CIGARRO_ID, 6, 10).get();
+
+        assertTrue(reservationLedger.release(reservation.getId()).isPresent());
+        assertFalse(reservationLedger.release(reservation.getId()).isPresent());
+        assertThat(reservationLedger.reservedQuantity(CIGARRO_ID), is(equalTo(0)));
+    }
+
+    @Test
+    void whenReservationExpiresThenItIsReleased() {
+        CigarroReservationLedger expiredLedger = new CigarroReservationLedger(Duration.ofSeconds(-1), clock);
+        Reservation reservation = expiredLedger.hold(CIGARRO_ID, 6, 10).get();
+
+        expiredLedger.releaseExpired();
+
+        assertFalse(expiredLedger.release(reservation.getId()).isPresent());
+        assertThat(expiredLedger.reservedQuantity(CIGARRO_ID), is(equalTo(0)));
+    }
+
+    @Test
+    void whenConcurrentHoldsAreCalledThenStockIsNeverOversold() throws Exception {
+        int threads = 64;
+        int stock = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int held = 0;
+                for (int j = 0; j < 10; j++) {
+                    if (reservationLedger.hold(CIGARRO_ID, 1, stock).isPresent()) {
+                        held++;
+                    }
+                }
+                return held;
+            }));
+        }
+        start.countDown();
+
+        int totalHeld = 0;
+        for (Future<Integer> future : futures) {
+            totalHeld += future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(totalHeld, is(equalTo(stock)));
+        assertThat(reservationLedger.reservedQuantity(CIGARRO_ID), is(equalTo(stock)));
+    }
+
+    @Test
+    void whenReservationsAreLockedThenHoldsInOtherTransactionsWaitUntilItCompletes() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            reservationLedger.lockUntilCompletion(Arrays.asList(CIGARRO_ID, CIGARRO_ID + 64, 2L));
+            Future<Boolean> hold = executor.submit(() -> inTransaction(() -> {
+                reservationLedger.lockUntilCompletion(CIGARRO_ID);
+                return reservationLedger.hold(CIGARRO_ID, 1, 10).isPresent();
+            }));
+
+            Thread.sleep(100);
+            assertFalse(hold.isDone());
+
+            completeTransaction();
+            assertTrue(hold.get(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void whenReservationIsCommittedThenItIsReleasedWhileItsCigarroStaysLocked() {
+        Reservation reservation = reservationLedger.hold(CIGARRO_ID, 6, 10).get();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(reservationLedger.commit(reservation.getId()).isPresent());
+
+            assertThat(reservationLedger.reservedQuantity(CIGARRO_ID), is(equalTo(0)));
+            assertThat(TransactionSynchronizationManager.getSynchronizations().size(), is(equalTo(1)));
+        } finally {
+            completeTransaction();
+        }
+    }
+
+    @Test
+    void whenReservationsAreLockedOutsideATransactionThenThrowException() {
+        assertThrows(IllegalStateException.class, () -> reservationLedger.lockUntilCompletion(CIGARRO_ID));
+    }
+
+    private static <T> T inTransaction(Callable<T> work) throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            return work.call();
+        } finally {
+            completeTransaction();
+        }
+    }
+
+    private static void completeTransaction() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+}
@@ -0,0 +1,87 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroSearchResultDTO;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CigarroSearchIndexTest {
+
+    @Mock
+    private CigarroRepository cigarroRepository;
+
+    @InjectMocks
+    private CigarroSearchIndex cigarroSearchIndex;
+
+    @Test
+    void whenIndexIsLoadedThenCigarrosAreFoundByNamePrefixIgnoringCaseAndAccents() {
+        when(cigarroRepository.streamSearchEntries()).thenReturn(Stream.of(
+                new CigarroSearchResultDTO(1L, "Virgínia Gold", "Souza Cruz"),
+                new CigarroSearchResultDTO(2L, "Marlboro", "Philip Morris")));
+
+        cigarroSearchIndex.load();
+
+        assertThat(names(cigarroSearchIndex.search("VIRGI", 10)), contains("Virgínia Gold"));
+        assertThat(names(cigarroSearchIndex.search("marl", 10)), contains("Marlboro"));
+    }
+
+    @Test
+    void whenQueryMatchesAWordOfTheBrandThenCigarroIsFoundAfterWholeNameMatches() {
+        cigarroSearchIndex.add(new CigarroSearchResultDTO(1L, "Classic", "Souza Cruz"));
+        cigarroSearchIndex.add(new CigarroSearchResultDTO(2L, "Cruzeiro", "Other"));
+
+        assertThat(names(cigarroSearchIndex.search("cruz", 10)), contains("Cruzeiro", "Classic"));
+        assertThat(names(cigarroSearchIndex.search("souza c", 10)), is(empty()));
+    }
+
+    @Test
+    void whenMoreCigarrosMatchThanRequestedThenOnlyTopKAreReturned() {
+        for (long id = 1; id <= 20; id++) {
+            cigarroSearchIndex.add(new CigarroSearchResultDTO(id, "Dunhill " + id, "BAT"));
+        }
+
+        assertThat(cigarroSearchIndex.search("dun", 5), hasSize(5));
+    }
+
+    @Test
+    void whenCigarroIsCreatedThenItBecomesSearchable() {
+        cigarroSearchIndex.onStockChanged(new CigarroStockChangedEvent(this, 1L, "Lucky Strike", "BAT",
+                StockMovementType.CREATION, null, 10, null, 0L));
+
+        assertThat(names(cigarroSearchIndex.search("strike", 10)), contains("Lucky Strike"));
+    }
+
+    @Test
+    void whenCigarroIsDeletedThenItIsNoLongerSearchable() {
+        cigarroSearchIndex.add(new CigarroSearchResultDTO(1L, "Lucky Strike", "BAT"));
+
+        cigarroSearchIndex.onDeleted(new CigarroDeletedEvent(this, 1L, "Lucky Strike"));
+
+        assertThat(cigarroSearchIndex.search("lucky", 10), is(empty()));
+        assertThat(cigarroSearchIndex.search("bat", 10), is(empty()));
+        assertThat(cigarroSearchIndex.size(), is(equalTo(0)));
+    }
+
+    private List<String> names(List<CigarroSearchResultDTO> results) {
+        return results.stream().map(CigarroSearchResultDTO::getName).collect(Collectors.toList());
+    }
+}
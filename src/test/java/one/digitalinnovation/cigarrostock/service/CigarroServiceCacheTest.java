@@ -0,0 +1,130 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.config.CacheConfig;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CigarroServiceCacheTest {
+
+    private static final int CALLERS = 8;
+
+    @Autowired
+    private CigarroService cigarroService;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache cigarrosCache;
+
+    private CigarroDTO createdCigarroDTO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cigarrosCache = cacheManager.getCache(CacheConfig.CIGARROS_CACHE);
+        createdCigarroDTO = cigarroService.createCigarro(CigarroDTOBuilder.builder().id(null).name("Cached").build().toCigarroDTO());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cigarroRepository.findByName(createdCigarroDTO.getName()).ifPresent(cigarroRepository::delete);
+        cigarrosCache.clear();
+    }
+
+    @Test
+    void whenCigarroIsCreatedThenItIsCachedByName() throws Exception {
+        assertThat(cigarrosCache.get(createdCigarroDTO.getName(), CigarroDTO.class), is(equalTo(createdCigarroDTO)));
+        assertThat(cigarroService.findByName(createdCigarroDTO.getName()), is(equalTo(createdCigarroDTO)));
+    }
+
+    @Test
+    void whenAnUncachedNameIsLookedUpConcurrentlyThenItIsQueriedOnce() throws Exception {
+        cigarrosCache.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        double collapsedBefore = collapsedLookups();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CigarroDTO>> lookups = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            lookups.add(executor.submit(() -> {
+                start.await();
+                return cigarroService.findByName(createdCigarroDTO.getName());
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<CigarroDTO> lookup : lookups) {
+                assertThat(lookup.get(5, TimeUnit.SECONDS), is(equalTo(createdCigarroDTO)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long queries = Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains(CigarroDTO.class.getName()) && query.endsWith("where c.name = :name"))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+        assertThat(queries, is(equalTo(1L)));
+        assertThat(collapsedLookups() - collapsedBefore, is(lessThanOrEqualTo((double) CALLERS - 1)));
+    }
+
+    private double collapsedLookups() {
+        return meterRegistry.get("cigarro.cache.collapsed")
+                .tag("cache", CacheConfig.CIGARROS_CACHE)
+                .counter()
+                .count();
+    }
+
+    @Test
+    void whenIncrementIsCalledThenCachedCigarroIsUpdated() throws Exception {
+        cigarroService.increment(createdCigarroDTO.getId(), 10);
+
+        CigarroDTO cachedCigarroDTO = cigarrosCache.get(createdCigarroDTO.getName(), CigarroDTO.class);
+        assertThat(cachedCigarroDTO.getQuantity(), is(equalTo(createdCigarroDTO.getQuantity() + 10)));
+    }
+
+    @Test
+    void whenCigarroIsDeletedThenCachedCigarroIsEvicted() throws Exception {
+        cigarroService.deleteById(createdCigarroDTO.getId());
+
+        assertThat(cigarrosCache.get(createdCigarroDTO.getName()), is(nullValue()));
+    }
+}
@@ -0,0 +1,336 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.StockMovementRepository;
+import one.digitalinnovation.cigarrostock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+@SpringBootTest
+public class CigarroServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int MAX_STOCK = 500;
+
+    @Autowired
+    private CigarroService cigarroService;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long cigarroId;
+
+    @BeforeEach
+    void setUp() {
+        Cigarro cigarro = new Cigarro(null, "Concurrency", "Souza Cruz", MAX_STOCK, 0, CigarroType.VIRGINIA, null, null);
+        cigarroId = cigarroRepository.save(cigarro).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cigarroRepository.deleteById(cigarroId);
+    }
+
+    @Test
+    void whenConcurrentIncrementsAreCalledThenNoUpdateIsLost() throws Exception {
+        int incrementsPerThread = 5;
+
+        int applied = runConcurrentIncrements(incrementsPerThread);
+
+        int expectedQuantity = THREADS * incrementsPerThread;
+        assertThat(applied, is(equalTo(expectedQuantity)));
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(expectedQuantity)));
+    }
+
+    @Test
+    void whenConcurrentIncrementsExceedMaxThenStockStopsAtMax() throws Exception {
+        int incrementsPerThread = 10;
+
+        int applied = runConcurrentIncrements(incrementsPerThread);
+
+        assertThat(applied, is(equalTo(MAX_STOCK)));
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(MAX_STOCK)));
+    }
+
+    @Test
+    void whenConcurrentIncrementsAreJournaledThenReplayingTheJournalGivesTheStock() throws Exception {
+        runConcurrentIncrements(2);
+        stockJournalService.takeSnapshots();
+        runConcurrentIncrements(1);
+
+        int quantity = cigarroRepository.findById(cigarroId).get().getQuantity();
+        assertThat(quantity, is(equalTo(THREADS * 3)));
+        assertThat(stockJournalService.replayQuantity(cigarroId), is(equalTo((long) quantity)));
+    }
+
+    @Test
+    void whenConcurrentMovementsAndIncrementsAreCalledThenNoUpdateIsLost() throws Exception {
+        int operationsPerThread = 5;
+        AtomicInteger applied = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean useMovements = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < operationsPerThread; j++) {
+                    try {
+                        if (useMovements) {
+                            cigarroService.applyMovements(Collections.singletonList(new MovementDTO(cigarroId, 1)));
+                        } else {
+                            cigarroService.increment(cigarroId, 1);
+                        }
+                        applied.incrementAndGet();
+                    } catch (CigarroConcurrentUpdateException e) {
+                        // retries exhausted: the batch was rolled back and surfaces as 409
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(applied.get())));
+    }
+
+    @Test
+    void whenSnapshotsAreTakenWhileStockChangesThenReplayingTheJournalGivesTheStock() throws Exception {
+        // snapshots every cigarro with at least one journal entry since its previous snapshot
+        StockJournalService eagerJournalService = new StockJournalService(stockMovementRepository, stockSnapshotRepository, 1, Clock.systemUTC());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicBoolean changing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<Integer> snapshotter = executor.submit(() -> {
+            start.await();
+            int snapshots = 0;
+            while (changing.get()) {
+                transactionTemplate.executeWithoutResult(status -> eagerJournalService.takeSnapshots());
+                snapshots++;
+            }
+            return snapshots;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean useMovements = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 5; j++) {
+                    try {
+                        if (useMovements) {
+                            cigarroService.applyMovements(Collections.singletonList(new MovementDTO(cigarroId, 1)));
+                        } else {
+                            cigarroService.increment(cigarroId, 1);
+                        }
+                    } catch (CigarroConcurrentUpdateException e) {
+                        // retries exhausted: the batch was rolled back and was not journaled either
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        changing.set(false);
+        log.info("Took snapshots {} times while the stock changed", snapshotter.get(1, TimeUnit.MINUTES));
+        transactionTemplate.executeWithoutResult(status -> eagerJournalService.takeSnapshots());
+        executor.shutdown();
+
+        int quantity = cigarroRepository.findById(cigarroId).get().getQuantity();
+        assertThat(stockJournalService.replayQuantity(cigarroId), is(equalTo((long) quantity)));
+        assertThat(stockMovementRepository.sumQuantityAfter(cigarroId, -1L), is(equalTo((long) quantity)));
+    }
+
+    @Test
+    void whenConcurrentReservationsAndDecrementsAreCalledThenHeldUnitsAreNeverSold() throws Exception {
+        int stock = 100;
+        cigarroService.increment(cigarroId, stock);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger oversold = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean reserves = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 5; j++) {
+                    if (reserves) {
+                        ReservationDTO reservation;
+                        try {
+                            reservation = cigarroService.reserve(cigarroId, 1);
+                        } catch (CigarroStockInsufficientException e) {
+                            continue;
+                        }
+                        try {
+                            cigarroService.commitReservation(reservation.getId());
+                            sold.incrementAndGet();
+                        } catch (CigarroStockInsufficientException e) {
+                            // the units held were sold by a decrement
+                            oversold.incrementAndGet();
+                        }
+                    } else {
+                        try {
+                            cigarroService.decrement(cigarroId, 1);
+                            sold.incrementAndGet();
+                        } catch (CigarroStockInsufficientException e) {
+                            // expected once the stock left is reserved or sold
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(oversold.get(), is(equalTo(0)));
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(stock - sold.get())));
+    }
+
+    @Test
+    void whenConcurrentCreatesUseTheSameNameThenOnlyOneIsRegistered() throws Exception {
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().id(null).name("Concurrent create").build().toCigarroDTO();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    cigarroService.createCigarro(cigarroDTO);
+                    created.incrementAndGet();
+                } catch (CigarroAlreadyRegisteredException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        cigarroRepository.findByName(cigarroDTO.getName()).ifPresent(cigarroRepository::delete);
+
+        assertThat(created.get(), is(equalTo(1)));
+        assertThat(rejected.get(), is(equalTo(THREADS - 1)));
+    }
+
+    @Test
+    void whenBulkCreationClashesWithARegisteredNameThenOnlyThatNameIsReported() {
+        CigarroDTO registeredCigarroDTO = CigarroDTOBuilder.builder().id(null).name("Concurrency").build().toCigarroDTO();
+        CigarroDTO newCigarroDTO = CigarroDTOBuilder.builder().id(null).name("Bulk new").build().toCigarroDTO();
+
+        CigarroAlreadyRegisteredException exception = assertThrows(CigarroAlreadyRegisteredException.class,
+                () -> cigarroService.createCigarros(Arrays.asList(registeredCigarroDTO, newCigarroDTO)));
+
+        assertThat(exception.getMessage(), is(equalTo(new CigarroAlreadyRegisteredException("Concurrency").getMessage())));
+        assertThat(cigarroRepository.findByName(newCigarroDTO.getName()).isPresent(), is(false));
+    }
+
+    @Test
+    void whenCreationViolatesAnotherConstraintThenItIsNotReportedAsAlreadyRegistered() {
+        CigarroDTO cigarroDTO = CigarroDTOBuilder.builder().id(null).name("Too long".repeat(40)).build().toCigarroDTO();
+
+        assertThrows(DataIntegrityViolationException.class, () -> cigarroService.createCigarro(cigarroDTO));
+    }
+
+    private int runConcurrentIncrements(int incrementsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    try {
+                        cigarroService.increment(cigarroId, 1);
+                        applied.incrementAndGet();
+                    } catch (CigarroStockExceededException e) {
+                        // expected once the max capacity is reached
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        int operations = THREADS * incrementsPerThread;
+        log.info("{} increments on {} threads in {} ms ({} ops/s)", operations, THREADS,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), operations * 1_000_000_000L / Math.max(elapsedNanos, 1));
+        return applied.get();
+    }
+}
@@ -0,0 +1,89 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import one.digitalinnovation.cigarrostock.controller.CigarroController;
+import one.digitalinnovation.cigarrostock.dto.QuantityDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "cigarro.metrics.stock-units-refresh-ms=0")
+public class CigarroServiceMetricsTest {
+
+    private static final String UNKNOWN_CIGARRO_NAME = "Unknown";
+
+    @Autowired
+    private CigarroController cigarroController;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void whenNotRegisteredCigarroNameIsGivenThenOperationIsTimedAndExceptionIsCountedOnce() {
+        double notFoundBefore = exceptionCount(CigarroNotFoundException.class);
+        long findByNameCallsBefore = findByNameCalls();
+
+        assertThrows(CigarroNotFoundException.class, () -> cigarroController.findByName(UNKNOWN_CIGARRO_NAME, new HttpHeaders()));
+
+        assertThat(exceptionCount(CigarroNotFoundException.class), is(equalTo(notFoundBefore + 1)));
+        assertThat(findByNameCalls(), is(equalTo(findByNameCallsBefore + 1)));
+    }
+
+    @Test
+    void whenIncrementExceedsTheMaxThenExceptionIsCountedOnce() {
+        Cigarro cigarro = cigarroRepository.save(new Cigarro(null, "Metrics", "Souza Cruz", 10, 10, CigarroType.VIRGINIA, null, null));
+        double exceededBefore = exceptionCount(CigarroStockExceededException.class);
+        try {
+            assertThrows(CigarroStockExceededException.class,
+                    () -> cigarroController.increment(cigarro.getId(), new QuantityDTO(1), null));
+
+            assertThat(exceptionCount(CigarroStockExceededException.class), is(equalTo(exceededBefore + 1)));
+        } finally {
+            cigarroRepository.deleteById(cigarro.getId());
+        }
+    }
+
+    @Test
+    void whenMetricsAreScrapedThenStockUnitsPerTypeAreReported() {
+        double units = meterRegistry.get("cigarro.stock.units")
+                .tag("type", CigarroType.VIRGINIA.name())
+                .gauge()
+                .value();
+
+        long storedUnits = cigarroRepository.findAll()
+                .stream()
+                .filter(cigarro -> cigarro.getType() == CigarroType.VIRGINIA)
+                .mapToLong(Cigarro::getQuantity)
+                .sum();
+        assertThat(units, is(equalTo((double) storedUnits)));
+    }
+
+    private double exceptionCount(Class<? extends Exception> exceptionClass) {
+        return meterRegistry.get("cigarro.exceptions")
+                .tag("exception", exceptionClass.getSimpleName())
+                .counter()
+                .count();
+    }
+
+    private long findByNameCalls() {
+        Timer timer = meterRegistry.find("cigarro.operations")
+                .tag("operation", "findByName")
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -1,22 +1,58 @@
 package one.digitalinnovation.cigarrostock.service;
 
 import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.config.CacheConfig;
 import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.dto.ReservationDTO;
+import one.digitalinnovation.cigarrostock.dto.StockMovementDTO;
 import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
 import one.digitalinnovation.cigarrostock.exception.CigarroAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.CigarroConcurrentUpdateException;
 import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroReservationNotFoundException;
 import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.CigarroVersionMismatchException;
 import one.digitalinnovation.cigarrostock.mapper.CigarroMapper;
 import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.service.CigarroReservationLedger.Reservation;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -26,9 +62,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +82,30 @@ public class CigarroServiceTest {
     @Mock
     private CigarroRepository cigarroRepository;
 
+    @Mock
+    private CigarroReservationLedger reservationLedger;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private OptimisticRetry optimisticRetry;
+
+    @Mock
+    private StockJournalService stockJournalService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockWriteBehindBuffer writeBehindBuffer;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cigarrosCache;
+
     private CigarroMapper cigarroMapper = CigarroMapper.INSTANCE;
 
     @InjectMocks
@@ -49,10 +116,11 @@ public class CigarroServiceTest {
         // given
         CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
         Cigarro expectedSavedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        Cigarro cigarroToSave = cigarroMapper.toModel(expectedCigarroDTO);
+        cigarroToSave.setId(null);
 
         // when
-        when(cigarroRepository.findByName(expectedCigarroDTO.getName())).thenReturn(Optional.empty());
-        when(cigarroRepository.save(expectedSavedCigarro)).thenReturn(expectedSavedCigarro);
+        when(cigarroRepository.saveAndFlush(cigarroToSave)).thenReturn(expectedSavedCigarro);
 
         //then
         CigarroDTO createdCigarroDTO = cigarroService.createCigarro(expectedCigarroDTO);
@@ -67,22 +135,120 @@ public class CigarroServiceTest {
         // given
         CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
         Cigarro duplicatedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        duplicatedCigarro.setId(null);
 
         // when
-        when(cigarroRepository.findByName(expectedCigarroDTO.getName())).thenReturn(Optional.of(duplicatedCigarro));
+        when(cigarroRepository.saveAndFlush(duplicatedCigarro)).thenThrow(uniqueNameViolation());
 
         // then
         assertThrows(CigarroAlreadyRegisteredException.class, () -> cigarroService.createCigarro(expectedCigarroDTO));
     }
 
+    @Test
+    void whenCreationViolatesAnotherConstraintThenTheViolationIsNotReportedAsAlreadyRegistered() {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro cigarroToSave = cigarroMapper.toModel(expectedCigarroDTO);
+        cigarroToSave.setId(null);
+        DataIntegrityViolationException notNullViolation = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", new SQLException(), null));
+
+        // when
+        when(cigarroRepository.saveAndFlush(cigarroToSave)).thenThrow(notNullViolation);
+
+        // then
+        assertThrows(DataIntegrityViolationException.class, () -> cigarroService.createCigarro(expectedCigarroDTO));
+    }
+
+    @Test
+    void whenCigarrosInformedThenTheyShouldBeCreatedInBulk() throws CigarroAlreadyRegisteredException {
+        // given
+        CigarroDTO firstCigarroDTO = CigarroDTOBuilder.builder().id(null).build().toCigarroDTO();
+        CigarroDTO secondCigarroDTO = CigarroDTOBuilder.builder().id(null).name("Derby").build().toCigarroDTO();
+        List<Cigarro> cigarrosToSave = Arrays.asList(cigarroMapper.toModel(firstCigarroDTO), cigarroMapper.toModel(secondCigarroDTO));
+
+        // when
+        when(cigarroRepository.saveAll(cigarrosToSave)).thenReturn(cigarrosToSave);
+
+        // then
+        List<CigarroDTO> createdCigarrosDTO = cigarroService.createCigarros(Arrays.asList(firstCigarroDTO, secondCigarroDTO));
+
+        assertThat(createdCigarrosDTO, is(equalTo(Arrays.asList(firstCigarroDTO, secondCigarroDTO))));
+        verify(cigarroRepository, times(1)).flush();
+    }
+
+    @Test
+    void whenAlreadyRegisteredCigarroInformedInBulkThenAnExceptionShouldBeThrown() {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+
+        // when
+        doThrow(uniqueNameViolation()).when(cigarroRepository).flush();
+
+        // then
+        assertThrows(CigarroAlreadyRegisteredException.class, () -> cigarroService.createCigarros(Collections.singletonList(expectedCigarroDTO)));
+        verify(cigarroRepository, never()).findByNameIn(any());
+        verifyNoInteractions(stockJournalService);
+    }
+
+    @Test
+    void whenOneCigarroOfTheBulkIsAlreadyRegisteredThenOnlyItsNameIsReported() {
+        // given
+        CigarroDTO registeredCigarroDTO = CigarroDTOBuilder.builder().id(null).build().toCigarroDTO();
+        CigarroDTO newCigarroDTO = CigarroDTOBuilder.builder().id(null).name("Derby").build().toCigarroDTO();
+
+        // when
+        doThrow(uniqueNameViolation()).when(cigarroRepository).flush();
+        when(cigarroRepository.findRegisteredNames(Set.of(registeredCigarroDTO.getName(), newCigarroDTO.getName())))
+                .thenReturn(Collections.singletonList(registeredCigarroDTO.getName()));
+
+        // then
+        CigarroAlreadyRegisteredException exception = assertThrows(CigarroAlreadyRegisteredException.class,
+                () -> cigarroService.createCigarros(Arrays.asList(registeredCigarroDTO, newCigarroDTO)));
+        assertThat(exception.getMessage(), is(equalTo(new CigarroAlreadyRegisteredException(registeredCigarroDTO.getName()).getMessage())));
+    }
+
+    @Test
+    void whenDuplicatedCigarrosInformedInBulkThenAnExceptionShouldBeThrown() {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+
+        // when
+        doThrow(uniqueNameViolation()).when(cigarroRepository).flush();
+
+        // then
+        CigarroAlreadyRegisteredException exception = assertThrows(CigarroAlreadyRegisteredException.class,
+                () -> cigarroService.createCigarros(Arrays.asList(expectedCigarroDTO, expectedCigarroDTO)));
+        assertThat(exception.getMessage(), is(equalTo(new CigarroAlreadyRegisteredException(expectedCigarroDTO.getName()).getMessage())));
+    }
+
+    @Test
+    void whenImportedBatchHasRegisteredNamesThenOnlyTheOthersAreCreated() throws CigarroAlreadyRegisteredException {
+        // given
+        CigarroDTO registeredCigarroDTO = CigarroDTOBuilder.builder().id(null).build().toCigarroDTO();
+        CigarroDTO newCigarroDTO = CigarroDTOBuilder.builder().id(null).name("Derby").build().toCigarroDTO();
+        List<Cigarro> cigarrosToSave = Collections.singletonList(cigarroMapper.toModel(newCigarroDTO));
+
+        // when
+        when(cigarroRepository.findByNameIn(Arrays.asList(registeredCigarroDTO.getName(), newCigarroDTO.getName())))
+                .thenReturn(Collections.singletonList(cigarroMapper.toModel(registeredCigarroDTO)));
+        when(cigarroRepository.saveAll(cigarrosToSave)).thenReturn(cigarrosToSave);
+
+        // then
+        Set<String> registeredNames = cigarroService.createUnregisteredCigarros(Arrays.asList(registeredCigarroDTO, newCigarroDTO));
+
+        assertThat(registeredNames, is(equalTo(Set.of(registeredCigarroDTO.getName()))));
+        verify(cigarroRepository, times(1)).flush();
+        verify(stockJournalService).record(any(), any(), anyInt(), any());
+    }
+
     @Test
     void whenValidCigarroNameIsGivenThenReturnACigarro() throws CigarroNotFoundException {
         // given
         CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
-        Cigarro expectedFoundCigarro = cigarroMapper.toModel(expectedFoundCigarroDTO);
 
         // when
-        when(cigarroRepository.findByName(expectedFoundCigarro.getName())).thenReturn(Optional.of(expectedFoundCigarro));
+        when(cigarroRepository.findDTOByName(expectedFoundCigarroDTO.getName())).thenReturn(Optional.of(expectedFoundCigarroDTO));
 
         // then
         CigarroDTO foundCigarroDTO = cigarroService.findByName(expectedFoundCigarroDTO.getName());
@@ -96,7 +262,7 @@ public class CigarroServiceTest {
         CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
 
         // when
-        when(cigarroRepository.findByName(expectedFoundCigarroDTO.getName())).thenReturn(Optional.empty());
+        when(cigarroRepository.findDTOByName(expectedFoundCigarroDTO.getName())).thenReturn(Optional.empty());
 
         // then
         assertThrows(CigarroNotFoundException.class, () -> cigarroService.findByName(expectedFoundCigarroDTO.getName()));
@@ -106,10 +272,9 @@ public class CigarroServiceTest {
     void whenListCigarroIsCalledThenReturnAListOfCigarros() {
         // given
         CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
-        Cigarro expectedFoundCigarro = cigarroMapper.toModel(expectedFoundCigarroDTO);
 
         //when
-        when(cigarroRepository.findAll()).thenReturn(Collections.singletonList(expectedFoundCigarro));
+        when(cigarroRepository.findAllDTOs()).thenReturn(Collections.singletonList(expectedFoundCigarroDTO));
 
         //then
         List<CigarroDTO> foundListCigarrosDTO = cigarroService.listAll();
@@ -121,7 +286,7 @@ public class CigarroServiceTest {
     @Test
     void whenListCigarroIsCalledThenReturnAnEmptyListOfCigarros() {
         //when
-        when(cigarroRepository.findAll()).thenReturn(Collections.EMPTY_LIST);
+        when(cigarroRepository.findAllDTOs()).thenReturn(Collections.emptyList());
 
         //then
         List<CigarroDTO> foundListCigarrosDTO = cigarroService.listAll();
@@ -129,6 +294,55 @@ public class CigarroServiceTest {
         assertThat(foundListCigarrosDTO, is(empty()));
     }
 
+    @Test
+    void whenListCigarroIsCalledWithPageableThenReturnAPageOfCigarros() {
+        // given
+        CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedFoundCigarro = cigarroMapper.toModel(expectedFoundCigarroDTO);
+        Pageable pageable = PageRequest.of(0, 10);
+
+        //when
+        when(cigarroRepository.findAll(pageable)).thenReturn(new PageImpl<>(Collections.singletonList(expectedFoundCigarro), pageable, 1));
+
+        //then
+        Page<CigarroDTO> foundPageCigarrosDTO = cigarroService.listAll(pageable);
+
+        assertThat(foundPageCigarrosDTO.getTotalElements(), is(equalTo(1L)));
+        assertThat(foundPageCigarrosDTO.getContent().get(0), is(equalTo(expectedFoundCigarroDTO)));
+    }
+
+    @Test
+    void whenListAfterIsCalledThenReturnTheNextCigarros() {
+        // given
+        CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().id(2L).build().toCigarroDTO();
+        Cigarro expectedFoundCigarro = cigarroMapper.toModel(expectedFoundCigarroDTO);
+
+        //when
+        when(cigarroRepository.findByIdGreaterThanOrderById(1L, PageRequest.of(0, 10))).thenReturn(Collections.singletonList(expectedFoundCigarro));
+
+        //then
+        List<CigarroDTO> foundListCigarrosDTO = cigarroService.listAfter(1L, 10);
+
+        assertThat(foundListCigarrosDTO, is(equalTo(Collections.singletonList(expectedFoundCigarroDTO))));
+    }
+
+    @Test
+    void whenStreamAllIsCalledThenEachCigarroIsConsumedAndDetached() {
+        // given
+        CigarroDTO expectedFoundCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedFoundCigarro = cigarroMapper.toModel(expectedFoundCigarroDTO);
+        List<CigarroDTO> consumedCigarrosDTO = new ArrayList<>();
+
+        //when
+        when(cigarroRepository.streamAll()).thenReturn(Stream.of(expectedFoundCigarro));
+
+        //then
+        cigarroService.streamAll(consumedCigarrosDTO::add);
+
+        assertThat(consumedCigarrosDTO, is(equalTo(Collections.singletonList(expectedFoundCigarroDTO))));
+        verify(entityManager, times(1)).detach(expectedFoundCigarro);
+    }
+
     @Test
     void whenExclusionIsCalledWithValidIdThenACigarroShouldBeDeleted() throws CigarroNotFoundException {
         // given
@@ -144,6 +358,7 @@ public class CigarroServiceTest {
 
         verify(cigarroRepository, times(1)).findById(expectedDeletedCigarroDTO.getId());
         verify(cigarroRepository, times(1)).deleteById(expectedDeletedCigarroDTO.getId());
+        verify(eventPublisher).publishEvent(any(CigarroDeletedEvent.class));
     }
 
     @Test
@@ -152,28 +367,130 @@ public class CigarroServiceTest {
         CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
         Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
 
-        //when
-        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
-        when(cigarroRepository.save(expectedCigarro)).thenReturn(expectedCigarro);
-
         int quantityToIncrement = 10;
         int expectedQuantityAfterIncrement = expectedCigarroDTO.getQuantity() + quantityToIncrement;
+        expectedCigarro.setQuantity(expectedQuantityAfterIncrement);
+
+        //when
+        when(cigarroRepository.incrementQuantity(expectedCigarroDTO.getId(), quantityToIncrement)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
 
         // then
         CigarroDTO incrementedCigarroDTO = cigarroService.increment(expectedCigarroDTO.getId(), quantityToIncrement);
 
         assertThat(expectedQuantityAfterIncrement, equalTo(incrementedCigarroDTO.getQuantity()));
         assertThat(expectedQuantityAfterIncrement, lessThan(expectedCigarroDTO.getMax()));
+        verify(stockJournalService).record(expectedCigarroDTO.getId(), expectedCigarro.getVersion(), quantityToIncrement, StockMovementType.INCREMENT);
     }
 
     @Test
-    void whenIncrementIsGreatherThanMaxThenThrowException() {
+    void whenWriteBehindIsEnabledThenIncrementIsBufferedWithoutWritingTheDatabase() throws CigarroNotFoundException, CigarroStockExceededException {
+        //given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        CigarroDTO bufferedCigarroDTO = CigarroDTOBuilder.builder().quantity(expectedCigarroDTO.getQuantity() + 10).build().toCigarroDTO();
+
+        //when
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.isTracked(expectedCigarroDTO.getId())).thenReturn(false);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+        when(writeBehindBuffer.add(expectedCigarroDTO.getId(), 10)).thenReturn(bufferedCigarroDTO);
+
+        //then
+        CigarroDTO incrementedCigarroDTO = cigarroService.increment(expectedCigarroDTO.getId(), 10);
+
+        assertThat(incrementedCigarroDTO, is(equalTo(bufferedCigarroDTO)));
+        verify(writeBehindBuffer).track(eq(expectedCigarroDTO.getId()), argThat(storedCigarro -> storedCigarro.get().equals(Optional.of(expectedCigarroDTO))));
+        verify(cigarroRepository, times(0)).incrementQuantity(any(), anyInt());
+        verify(stockJournalService, times(0)).record(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void whenBufferedIncrementsAreAppliedThenTheyAreJournaledOrReportedAsExceeded() {
+        //given
+        Cigarro cigarroWithRoom = new Cigarro(1L, "Room", "Brand", 50, 10, CigarroType.VIRGINIA, null, 0L);
+        Cigarro fullCigarro = new Cigarro(2L, "Full", "Brand", 50, 45, CigarroType.VIRGINIA, null, 0L);
+        Map<Long, Integer> increments = new LinkedHashMap<>();
+        increments.put(1L, 20);
+        increments.put(2L, 20);
+        increments.put(3L, 20);
+
+        //when
+        when(cigarroRepository.findAllById(increments.keySet())).thenReturn(Arrays.asList(cigarroWithRoom, fullCigarro));
+        when(entityManager.find(Cigarro.class, 1L)).thenReturn(cigarroWithRoom);
+        when(cacheManager.getCache(CacheConfig.CIGARROS_CACHE)).thenReturn(cigarrosCache);
+
+        //then
+        List<MovementResultDTO> results = cigarroService.applyBufferedIncrements(increments);
+
+        assertThat(results, contains(
+                new MovementResultDTO(1L, 30, MovementStatus.APPLIED),
+                new MovementResultDTO(2L, 45, MovementStatus.STOCK_EXCEEDED),
+                new MovementResultDTO(3L, null, MovementStatus.NOT_FOUND)));
+        verify(cigarroRepository).flush();
+        verify(stockJournalService).record(1L, 0L, 20, StockMovementType.INCREMENT);
+        verify(cigarrosCache).evict("Room");
+        verify(cigarrosCache, never()).evict("Full");
+    }
+
+    @Test
+    void whenMovementsAreRequestedForAnExistingCigarroThenTheJournalIsQueried() throws CigarroNotFoundException {
+        // given
         CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
         Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        Instant from = Instant.parse("2026-01-01T00:00:00Z");
+        Instant to = Instant.parse("2026-01-02T00:00:00Z");
+        StockMovementDTO expectedMovement = new StockMovementDTO(1L, expectedCigarroDTO.getId(), 10, StockMovementType.INCREMENT, from);
+
+        // when
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+        when(stockJournalService.findMovements(expectedCigarroDTO.getId(), from, to, 1000)).thenReturn(Collections.singletonList(expectedMovement));
+
+        // then
+        List<StockMovementDTO> movements = cigarroService.findMovements(expectedCigarroDTO.getId(), from, to, 5000);
+
+        assertThat(movements, contains(expectedMovement));
+    }
+
+    @Test
+    void whenIncrementIsCalledWithCurrentVersionThenIncrementCigarroStock() throws Exception {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().version(3L).build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+
+        int quantityToIncrement = 10;
+        expectedCigarro.setQuantity(expectedCigarroDTO.getQuantity() + quantityToIncrement);
+        expectedCigarro.setVersion(4L);
+
+        when(cigarroRepository.incrementQuantityIfVersion(expectedCigarroDTO.getId(), quantityToIncrement, 0, 3L)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        CigarroDTO incrementedCigarroDTO = cigarroService.increment(expectedCigarroDTO.getId(), quantityToIncrement, 3L);
+
+        assertThat(incrementedCigarroDTO.getQuantity(), is(equalTo(expectedCigarroDTO.getQuantity() + quantityToIncrement)));
+        assertThat(incrementedCigarroDTO.getVersion(), is(equalTo(4L)));
+    }
+
+    @Test
+    void whenIncrementIsCalledWithStaleVersionThenThrowException() {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().version(4L).build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
 
+        int quantityToIncrement = 10;
+        when(cigarroRepository.incrementQuantityIfVersion(expectedCigarroDTO.getId(), quantityToIncrement, 0, 3L)).thenReturn(0);
         when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
 
+        assertThrows(CigarroVersionMismatchException.class, () -> cigarroService.increment(expectedCigarroDTO.getId(), quantityToIncrement, 3L));
+    }
+
+    @Test
+    void whenIncrementIsGreatherThanMaxThenThrowException() {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+
         int quantityToIncrement = 80;
+        when(cigarroRepository.incrementQuantity(expectedCigarroDTO.getId(), quantityToIncrement)).thenReturn(0);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
         assertThrows(CigarroStockExceededException.class, () -> cigarroService.increment(expectedCigarroDTO.getId(), quantityToIncrement));
     }
 
@@ -182,9 +499,10 @@ public class CigarroServiceTest {
         CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
         Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
 
+        int quantityToIncrement = 45;
+        when(cigarroRepository.incrementQuantity(expectedCigarroDTO.getId(), quantityToIncrement)).thenReturn(0);
         when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
 
-        int quantityToIncrement = 45;
         assertThrows(CigarroStockExceededException.class, () -> cigarroService.increment(expectedCigarroDTO.getId(), quantityToIncrement));
     }
 
@@ -192,60 +510,172 @@ public class CigarroServiceTest {
     void whenIncrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToIncrement = 10;
 
+        when(cigarroRepository.incrementQuantity(INVALID_CIGARRO_ID, quantityToIncrement)).thenReturn(0);
         when(cigarroRepository.findById(INVALID_CIGARRO_ID)).thenReturn(Optional.empty());
 
         assertThrows(CigarroNotFoundException.class, () -> cigarroService.increment(INVALID_CIGARRO_ID, quantityToIncrement));
     }
-//
-//    @Test
-//    void whenDecrementIsCalledThenDecrementBeerStock() throws BeerNotFoundException, BeerStockExceededException {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//        when(beerRepository.save(expectedBeer)).thenReturn(expectedBeer);
-//
-//        int quantityToDecrement = 5;
-//        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
-//        BeerDTO incrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedBeerDTO.getQuantity()));
-//        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledToEmptyStockThenEmptyBeerStock() throws BeerNotFoundException, BeerStockExceededException {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//        when(beerRepository.save(expectedBeer)).thenReturn(expectedBeer);
-//
-//        int quantityToDecrement = 10;
-//        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
-//        BeerDTO incrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(0));
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedBeerDTO.getQuantity()));
-//    }
-//
-//    @Test
-//    void whenDecrementIsLowerThanZeroThenThrowException() {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//
-//        int quantityToDecrement = 80;
-//        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
-//        int quantityToDecrement = 10;
-//
-//        when(beerRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
-//
-//        assertThrows(BeerNotFoundException.class, () -> beerService.decrement(INVALID_BEER_ID, quantityToDecrement));
-//    }
+
+    @Test
+    void whenMovementsAreAppliedThenEachResultIsReturned() throws CigarroConcurrentUpdateException {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        List<MovementDTO> movements = Arrays.asList(
+                new MovementDTO(expectedCigarroDTO.getId(), 20),
+                new MovementDTO(expectedCigarroDTO.getId(), 30),
+                new MovementDTO(expectedCigarroDTO.getId(), -40),
+                new MovementDTO(INVALID_CIGARRO_ID + 1, 10));
+
+        // when
+        when(optimisticRetry.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(cigarroRepository.findAllById(Set.of(expectedCigarroDTO.getId(), INVALID_CIGARRO_ID + 1)))
+                .thenReturn(Collections.singletonList(expectedCigarro));
+
+        // then
+        List<MovementResultDTO> results = cigarroService.applyMovements(movements);
+
+        assertThat(results.get(0), is(equalTo(new MovementResultDTO(expectedCigarroDTO.getId(), 30, MovementStatus.APPLIED))));
+        assertThat(results.get(1), is(equalTo(new MovementResultDTO(expectedCigarroDTO.getId(), 30, MovementStatus.STOCK_EXCEEDED))));
+        assertThat(results.get(2), is(equalTo(new MovementResultDTO(expectedCigarroDTO.getId(), 30, MovementStatus.INSUFFICIENT_STOCK))));
+        assertThat(results.get(3), is(equalTo(new MovementResultDTO(INVALID_CIGARRO_ID + 1, null, MovementStatus.NOT_FOUND))));
+        assertThat(expectedCigarro.getQuantity(), is(equalTo(30)));
+    }
+
+    @Test
+    void whenDecrementIsCalledThenDecrementCigarroStock() throws CigarroNotFoundException, CigarroStockInsufficientException {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+
+        int quantityToDecrement = 5;
+        int expectedQuantityAfterDecrement = expectedCigarroDTO.getQuantity() - quantityToDecrement;
+        expectedCigarro.setQuantity(expectedQuantityAfterDecrement);
+
+        when(cigarroRepository.decrementQuantity(expectedCigarroDTO.getId(), quantityToDecrement, 0)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        CigarroDTO decrementedCigarroDTO = cigarroService.decrement(expectedCigarroDTO.getId(), quantityToDecrement);
+
+        assertThat(expectedQuantityAfterDecrement, equalTo(decrementedCigarroDTO.getQuantity()));
+        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
+    }
+
+    @Test
+    void whenDecrementIsCalledThenStockChangeIsPublished() throws CigarroNotFoundException, CigarroStockInsufficientException {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().reorderThreshold(8).build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        expectedCigarro.setQuantity(expectedCigarroDTO.getQuantity() - 5);
+
+        // when
+        when(cigarroRepository.decrementQuantity(expectedCigarroDTO.getId(), 5, 0)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        // then
+        cigarroService.decrement(expectedCigarroDTO.getId(), 5);
+
+        ArgumentCaptor<CigarroStockChangedEvent> eventCaptor = ArgumentCaptor.forClass(CigarroStockChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getQuantityBefore(), is(equalTo(expectedCigarroDTO.getQuantity())));
+        assertThat(eventCaptor.getValue().getQuantity(), is(equalTo(expectedCigarroDTO.getQuantity() - 5)));
+        assertThat(eventCaptor.getValue().getReorderThreshold(), is(equalTo(8)));
+    }
+
+    @Test
+    void whenReorderThresholdIsUpdatedThenCigarroIsReevaluated() throws CigarroNotFoundException {
+        // given
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().reorderThreshold(20).build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+
+        // when
+        when(cigarroRepository.updateReorderThreshold(expectedCigarroDTO.getId(), 20)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        // then
+        CigarroDTO updatedCigarroDTO = cigarroService.updateReorderThreshold(expectedCigarroDTO.getId(), 20);
+
+        assertThat(updatedCigarroDTO.getReorderThreshold(), is(equalTo(20)));
+        ArgumentCaptor<CigarroStockChangedEvent> eventCaptor = ArgumentCaptor.forClass(CigarroStockChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getQuantityBefore(), is(nullValue()));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenThrowException() {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+
+        int quantityToDecrement = 80;
+        when(cigarroRepository.decrementQuantity(expectedCigarroDTO.getId(), quantityToDecrement, 0)).thenReturn(0);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        assertThrows(CigarroStockInsufficientException.class, () -> cigarroService.decrement(expectedCigarroDTO.getId(), quantityToDecrement));
+    }
+
+    @Test
+    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
+        int quantityToDecrement = 10;
+
+        when(cigarroRepository.decrementQuantity(INVALID_CIGARRO_ID, quantityToDecrement, 0)).thenReturn(0);
+        when(cigarroRepository.findById(INVALID_CIGARRO_ID)).thenReturn(Optional.empty());
+
+        assertThrows(CigarroNotFoundException.class, () -> cigarroService.decrement(INVALID_CIGARRO_ID, quantityToDecrement));
+    }
+
+    @Test
+    void whenReserveIsCalledThenAReservationIsReturned() throws CigarroNotFoundException, CigarroStockInsufficientException {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        int quantityToReserve = 5;
+        Reservation reservation = new Reservation(UUID.randomUUID(), expectedCigarroDTO.getId(), quantityToReserve, Instant.now());
+
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+        when(reservationLedger.hold(expectedCigarroDTO.getId(), quantityToReserve, expectedCigarroDTO.getQuantity())).thenReturn(Optional.of(reservation));
+
+        ReservationDTO reservationDTO = cigarroService.reserve(expectedCigarroDTO.getId(), quantityToReserve);
+
+        assertThat(reservationDTO.getId(), is(equalTo(reservation.getId())));
+        assertThat(reservationDTO.getQuantity(), is(equalTo(quantityToReserve)));
+    }
+
+    @Test
+    void whenReserveIsGreaterThanAvailableStockThenThrowException() {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        int quantityToReserve = 80;
+
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+        when(reservationLedger.hold(expectedCigarroDTO.getId(), quantityToReserve, expectedCigarroDTO.getQuantity())).thenReturn(Optional.empty());
+
+        assertThrows(CigarroStockInsufficientException.class, () -> cigarroService.reserve(expectedCigarroDTO.getId(), quantityToReserve));
+    }
+
+    @Test
+    void whenCommitIsCalledThenReservedStockIsDecremented() throws CigarroReservationNotFoundException, CigarroNotFoundException, CigarroStockInsufficientException {
+        CigarroDTO expectedCigarroDTO = CigarroDTOBuilder.builder().build().toCigarroDTO();
+        Cigarro expectedCigarro = cigarroMapper.toModel(expectedCigarroDTO);
+        Reservation reservation = new Reservation(UUID.randomUUID(), expectedCigarroDTO.getId(), 5, Instant.now());
+
+        when(reservationLedger.commit(reservation.getId())).thenReturn(Optional.of(reservation));
+        when(cigarroRepository.decrementQuantity(expectedCigarroDTO.getId(), reservation.getQuantity(), 0)).thenReturn(1);
+        when(cigarroRepository.findById(expectedCigarroDTO.getId())).thenReturn(Optional.of(expectedCigarro));
+
+        cigarroService.commitReservation(reservation.getId());
+
+        verify(cigarroRepository, times(1)).decrementQuantity(expectedCigarroDTO.getId(), reservation.getQuantity(), 0);
+    }
+
+    @Test
+    void whenCommitIsCalledWithExpiredReservationThenThrowException() {
+        UUID reservationId = UUID.randomUUID();
+
+        when(reservationLedger.commit(reservationId)).thenReturn(Optional.empty());
+
+        assertThrows(CigarroReservationNotFoundException.class, () -> cigarroService.commitReservation(reservationId));
+    }
+
+    private static DataIntegrityViolationException uniqueNameViolation() {
+        return new DataIntegrityViolationException("duplicate name",
+                new ConstraintViolationException("duplicate name", new SQLException(), "PUBLIC.UK_CIGARRO_NAME_INDEX_5 ON PUBLIC.CIGARRO(NAME)"));
+    }
 }
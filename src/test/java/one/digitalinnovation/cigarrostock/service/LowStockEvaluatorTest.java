@@ -0,0 +1,73 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.event.LowStockEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class LowStockEvaluatorTest {
+
+    private static final long CIGARRO_ID = 1L;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private LowStockEvaluator lowStockEvaluator;
+
+    @Test
+    void whenStockReachesTheReorderThresholdThenLowStockIsPublished() {
+        lowStockEvaluator.evaluate(stockChanged(12, 10, 10));
+
+        ArgumentCaptor<LowStockEvent> eventCaptor = ArgumentCaptor.forClass(LowStockEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getAlert().getCigarroId(), is(equalTo(CIGARRO_ID)));
+        assertThat(eventCaptor.getValue().getAlert().getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenStockWasAlreadyLowThenNothingIsPublishedAgain() {
+        lowStockEvaluator.evaluate(stockChanged(8, 5, 10));
+
+        verify(eventPublisher, never()).publishEvent(any(LowStockEvent.class));
+    }
+
+    @Test
+    void whenStockStaysAboveTheReorderThresholdThenNothingIsPublished() {
+        lowStockEvaluator.evaluate(stockChanged(20, 11, 10));
+
+        verify(eventPublisher, never()).publishEvent(any(LowStockEvent.class));
+    }
+
+    @Test
+    void whenNoReorderThresholdIsSetThenNothingIsPublished() {
+        lowStockEvaluator.evaluate(stockChanged(20, 0, null));
+
+        verify(eventPublisher, never()).publishEvent(any(LowStockEvent.class));
+    }
+
+    @Test
+    void whenThereIsNoPreviousStockAndItIsLowThenLowStockIsPublished() {
+        lowStockEvaluator.evaluate(stockChanged(null, 3, 10));
+
+        verify(eventPublisher).publishEvent(any(LowStockEvent.class));
+    }
+
+    private CigarroStockChangedEvent stockChanged(Integer quantityBefore, int quantity, Integer reorderThreshold) {
+        return new CigarroStockChangedEvent(this, CIGARRO_ID, "Marlboro", "Philip Morris", StockMovementType.DECREMENT, quantityBefore, quantity, reorderThreshold, 1L);
+    }
+}
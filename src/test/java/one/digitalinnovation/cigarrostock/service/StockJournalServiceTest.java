@@ -0,0 +1,99 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.entity.StockMovement;
+import one.digitalinnovation.cigarrostock.entity.StockSnapshot;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.repository.StockMovementRepository;
+import one.digitalinnovation.cigarrostock.repository.StockMovementRepository.Tail;
+import one.digitalinnovation.cigarrostock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockJournalServiceTest {
+
+    private static final long CIGARRO_ID = 1L;
+    private static final long SNAPSHOT_EVERY = 100L;
+
+    private final Instant now = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+
+    @Mock
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    private StockJournalService stockJournalService;
+
+    @BeforeEach
+    void setUp() {
+        stockJournalService = new StockJournalService(stockMovementRepository, stockSnapshotRepository, SNAPSHOT_EVERY,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void whenMovementIsRecordedThenItIsAppendedToTheJournal() {
+        stockJournalService.record(CIGARRO_ID, 7L, -5, StockMovementType.DECREMENT);
+
+        verify(stockMovementRepository).save(new StockMovement(null, CIGARRO_ID, 7L, -5, StockMovementType.DECREMENT, now));
+    }
+
+    @Test
+    void whenSnapshotExistsThenOnlyTheTailIsReplayed() {
+        StockSnapshot snapshot = new StockSnapshot(1L, CIGARRO_ID, 40L, 30L, now);
+        when(stockSnapshotRepository.findFirstByCigarroIdOrderByCigarroVersionDesc(CIGARRO_ID)).thenReturn(Optional.of(snapshot));
+        when(stockMovementRepository.sumQuantityAfter(CIGARRO_ID, 40L)).thenReturn(12L);
+
+        assertThat(stockJournalService.replayQuantity(CIGARRO_ID), is(equalTo(42L)));
+    }
+
+    @Test
+    void whenNoSnapshotExistsThenTheWholeJournalIsReplayed() {
+        when(stockSnapshotRepository.findFirstByCigarroIdOrderByCigarroVersionDesc(CIGARRO_ID)).thenReturn(Optional.empty());
+        when(stockMovementRepository.sumQuantityAfter(CIGARRO_ID, -1L)).thenReturn(12L);
+
+        assertThat(stockJournalService.replayQuantity(CIGARRO_ID), is(equalTo(12L)));
+    }
+
+    @Test
+    void whenTailIsLongEnoughThenSnapshotBuildsOnThePreviousOne() {
+        Tail tail = new Tail() {
+            public Long getCigarroId() {
+                return CIGARRO_ID;
+            }
+
+            public Long getCigarroVersion() {
+                return 52L;
+            }
+
+            public Long getQuantity() {
+                return -8L;
+            }
+        };
+        when(stockMovementRepository.findTails(SNAPSHOT_EVERY)).thenReturn(Collections.singletonList(tail));
+        when(stockSnapshotRepository.findFirstByCigarroIdOrderByCigarroVersionDesc(CIGARRO_ID))
+                .thenReturn(Optional.of(new StockSnapshot(1L, CIGARRO_ID, 40L, 30L, now)));
+
+        stockJournalService.takeSnapshots();
+
+        ArgumentCaptor<StockSnapshot> snapshotCaptor = ArgumentCaptor.forClass(StockSnapshot.class);
+        verify(stockSnapshotRepository).save(snapshotCaptor.capture());
+        assertThat(snapshotCaptor.getValue(), is(equalTo(new StockSnapshot(null, CIGARRO_ID, 52L, 22L, now))));
+    }
+}
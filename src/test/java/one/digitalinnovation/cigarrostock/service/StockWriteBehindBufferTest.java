@@ -0,0 +1,213 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.cigarrostock.builder.CigarroDTOBuilder;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.enums.StockMovementType;
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.CigarroStockChangedEvent;
+import one.digitalinnovation.cigarrostock.exception.CigarroNotFoundException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.service.StockWriteBehindBuffer.Flush;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StockWriteBehindBufferTest {
+
+    private final CigarroDTO cigarro = CigarroDTOBuilder.builder().max(50).quantity(10).build().toCigarroDTO();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    private StockWriteBehindBuffer buffer;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        buffer.close();
+    }
+
+    @Test
+    void whenIncrementFitsThenItIsAcknowledgedWithTheBufferedQuantity() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+
+        CigarroDTO incremented = buffer.add(cigarro.getId(), 15);
+
+        assertThat(incremented.getQuantity(), is(equalTo(25)));
+        assertThat(incremented.getVersion(), is(nullValue()));
+        assertThat(buffer.add(cigarro.getId(), 5).getQuantity(), is(equalTo(30)));
+    }
+
+    @Test
+    void whenPendingIncrementsWouldExceedMaxThenIncrementIsRejected() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 30);
+
+        assertThrows(CigarroStockExceededException.class, () -> buffer.add(cigarro.getId(), 11));
+        assertThat(buffer.drain().getIncrements(), hasEntry(cigarro.getId(), 30));
+    }
+
+    @Test
+    void whenBufferIsReopenedThenAcknowledgedIncrementsAreRecovered() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 15);
+        buffer.add(cigarro.getId(), 5);
+        buffer.close();
+
+        buffer = openBuffer();
+        Map<Long, Integer> recovered = buffer.recover(0);
+
+        assertThat(recovered, is(equalTo(Collections.singletonMap(cigarro.getId(), 20))));
+    }
+
+    @Test
+    void whenFlushIsSettledThenItsSegmentIsNotRecoveredAgain() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 15);
+        Flush flush = buffer.drain();
+        buffer.add(cigarro.getId(), 5);
+
+        buffer.flushed(flush, Collections.singletonList(new MovementResultDTO(cigarro.getId(), 25, MovementStatus.APPLIED)));
+
+        assertThat(buffer.drain().getIncrements(), is(equalTo(Collections.singletonMap(cigarro.getId(), 5))));
+        buffer.close();
+        buffer = openBuffer();
+        assertThat(buffer.recover(flush.getSegment()), is(equalTo(Collections.singletonMap(cigarro.getId(), 5))));
+    }
+
+    @Test
+    void whenFlushedIncrementWasNotAppliedThenItIsDroppedAndCounted() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 15);
+        Flush flush = buffer.drain();
+        buffer.onStockChanged(stockChanged(48, 1L));
+
+        buffer.flushed(flush, Collections.singletonList(new MovementResultDTO(cigarro.getId(), 48, MovementStatus.STOCK_EXCEEDED)));
+
+        assertThat(meterRegistry.counter("cigarro.write-behind.dropped").count(), is(equalTo(15.0)));
+        assertThat(buffer.drain().getIncrements(), is(anEmptyMap()));
+        assertThrows(CigarroStockExceededException.class, () -> buffer.add(cigarro.getId(), 3));
+    }
+
+    @Test
+    void whenStoredQuantityChangesThenIncrementsAreValidatedAgainstTheNewestOne() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+
+        buffer.onStockChanged(stockChanged(45, 2L));
+        buffer.onStockChanged(stockChanged(20, 1L));
+
+        assertThrows(CigarroStockExceededException.class, () -> buffer.add(cigarro.getId(), 6));
+        assertThat(buffer.add(cigarro.getId(), 5).getQuantity(), is(equalTo(50)));
+    }
+
+    @Test
+    void whenTrackedCigarroIsDeletedThenIncrementIsRejected() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+
+        buffer.onDeleted(new CigarroDeletedEvent(this, cigarro.getId(), cigarro.getName()));
+
+        assertThrows(CigarroNotFoundException.class, () -> buffer.add(cigarro.getId(), 1));
+        assertThat(buffer.drain().getIncrements(), is(anEmptyMap()));
+    }
+
+    @Test
+    void whenStripeIsHeldThenBufferedUnitsAreReturnedAndIncrementsWaitForCompletion() throws Exception {
+        buffer = openBuffer();
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 15);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(buffer.holdUntilCompletion(cigarro.getId()), is(equalTo(15)));
+            Future<CigarroDTO> increment = executor.submit(() -> buffer.add(cigarro.getId(), 5));
+
+            Thread.sleep(100);
+            assertFalse(increment.isDone());
+
+            completeTransaction();
+            assertThat(increment.get(1, TimeUnit.MINUTES).getQuantity(), is(equalTo(30)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void whenBufferedIncrementsAreHeldOutsideATransactionThenThrowException() throws Exception {
+        buffer = openBuffer();
+
+        assertThrows(IllegalStateException.class, () -> buffer.holdUntilCompletion(cigarro.getId()));
+    }
+
+    @Test
+    void whenCheckpointIsAheadOfTheSegmentsOnDiskThenNewSegmentsSurviveRecovery() throws Exception {
+        long checkpoint = 5;
+        buffer = openBuffer();
+        buffer.recover(checkpoint);
+        buffer.track(cigarro);
+        buffer.add(cigarro.getId(), 7);
+        buffer.close();
+
+        buffer = openBuffer();
+
+        assertThat(buffer.recover(checkpoint), is(equalTo(Collections.singletonMap(cigarro.getId(), 7))));
+    }
+
+    @Test
+    void whenNothingIsPendingThenDrainIsEmpty() throws Exception {
+        buffer = openBuffer();
+
+        assertTrue(buffer.drain().isEmpty());
+        assertThat(buffer.recover(0), is(aMapWithSize(0)));
+    }
+
+    private CigarroStockChangedEvent stockChanged(int quantity, long version) {
+        return new CigarroStockChangedEvent(this, cigarro.getId(), cigarro.getName(), cigarro.getBrand(),
+                StockMovementType.INCREMENT, null, quantity, null, version);
+    }
+
+    private static void completeTransaction() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    private StockWriteBehindBuffer openBuffer() throws IOException {
+        StockWriteBehindBuffer openedBuffer = new StockWriteBehindBuffer(meterRegistry, true, directory.toString(), 4);
+        openedBuffer.open();
+        return openedBuffer;
+    }
+}
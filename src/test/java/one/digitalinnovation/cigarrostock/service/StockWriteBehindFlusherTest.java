@@ -0,0 +1,183 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.cigarrostock.config.CacheConfig;
+import one.digitalinnovation.cigarrostock.dto.CigarroDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementDTO;
+import one.digitalinnovation.cigarrostock.dto.MovementResultDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.enums.MovementStatus;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.WriteBehindCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@SpringBootTest(properties = {
+        "cigarro.write-behind.enabled=true",
+        "cigarro.write-behind.directory=target/write-behind-test",
+        "cigarro.write-behind.flush-interval-ms=3600000"
+})
+public class StockWriteBehindFlusherTest {
+
+    private static final int THREADS = 16;
+    private static final int MAX_STOCK = 200;
+    private static final String CIGARRO_NAME = "Write behind";
+
+    @Autowired
+    private CigarroService cigarroService;
+
+    @Autowired
+    private StockWriteBehindFlusher writeBehindFlusher;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    @Autowired
+    private WriteBehindCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Long cigarroId;
+
+    @BeforeEach
+    void setUp() {
+        Cigarro cigarro = new Cigarro(null, CIGARRO_NAME, "Souza Cruz", MAX_STOCK, 0, CigarroType.VIRGINIA, null, null);
+        cigarroId = cigarroRepository.save(cigarro).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cigarroService.deleteById(cigarroId);
+    }
+
+    @Test
+    void whenBufferedIncrementsAreFlushedThenTheyAreStoredAndJournaled() throws Exception {
+        AtomicInteger acknowledged = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 20; j++) {
+                    try {
+                        cigarroService.increment(cigarroId, 1);
+                        acknowledged.incrementAndGet();
+                    } catch (CigarroStockExceededException e) {
+                        // the buffered quantity reached the max
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(acknowledged.get(), is(equalTo(MAX_STOCK)));
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(0)));
+
+        writeBehindFlusher.flush();
+
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(MAX_STOCK)));
+        assertThat(stockJournalService.replayQuantity(cigarroId), is(equalTo((long) MAX_STOCK)));
+        assertThat(checkpointRepository.findById(1).get().getSegment(), is(greaterThan(0L)));
+    }
+
+    @Test
+    void whenSynchronousMovementsRunAlongBufferedIncrementsThenNoAcknowledgedIncrementIsDropped() throws Exception {
+        double droppedBefore = meterRegistry.counter("cigarro.write-behind.dropped").count();
+        AtomicInteger acknowledged = new AtomicInteger();
+        AtomicInteger moved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean useMovements = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 20; j++) {
+                    if (useMovements) {
+                        List<MovementResultDTO> results = cigarroService.applyMovements(Collections.singletonList(new MovementDTO(cigarroId, 1)));
+                        if (results.get(0).getStatus() == MovementStatus.APPLIED) {
+                            moved.incrementAndGet();
+                        }
+                    } else {
+                        try {
+                            cigarroService.increment(cigarroId, 1);
+                            acknowledged.incrementAndGet();
+                        } catch (CigarroStockExceededException e) {
+                            // the buffered quantity reached the max
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        writeBehindFlusher.flush();
+
+        assertThat(meterRegistry.counter("cigarro.write-behind.dropped").count(), is(equalTo(droppedBefore)));
+        assertThat(cigarroRepository.findById(cigarroId).get().getQuantity(), is(equalTo(acknowledged.get() + moved.get())));
+        assertThat(acknowledged.get() + moved.get(), is(equalTo(MAX_STOCK)));
+    }
+
+    @Test
+    void whenBufferedIncrementIsFlushedThenTheCachedCigarroIsStoredAndVersioned() throws Exception {
+        CigarroDTO storedCigarroDTO = cigarroService.findByName(CIGARRO_NAME);
+
+        cigarroService.increment(cigarroId, 10);
+
+        assertThat(cigarrosCache().get(CIGARRO_NAME), is(nullValue()));
+        assertThat(cigarroService.findByName(CIGARRO_NAME), is(equalTo(storedCigarroDTO)));
+
+        writeBehindFlusher.flush();
+
+        assertThat(cigarrosCache().get(CIGARRO_NAME), is(nullValue()));
+        CigarroDTO flushedCigarroDTO = cigarroService.findByName(CIGARRO_NAME);
+        assertThat(flushedCigarroDTO.getQuantity(), is(equalTo(10)));
+        assertThat(flushedCigarroDTO.getVersion(), is(greaterThan(storedCigarroDTO.getVersion())));
+    }
+
+    private Cache cigarrosCache() {
+        return cacheManager.getCache(CacheConfig.CIGARROS_CACHE);
+    }
+}
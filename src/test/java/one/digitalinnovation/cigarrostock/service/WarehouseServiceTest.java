@@ -0,0 +1,191 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.CigarroLocationsDTO;
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.entity.Warehouse;
+import one.digitalinnovation.cigarrostock.entity.WarehouseStock;
+import one.digitalinnovation.cigarrostock.event.WarehouseStockChangedEvent;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockExceededException;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseAlreadyRegisteredException;
+import one.digitalinnovation.cigarrostock.exception.WarehouseNotFoundException;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import one.digitalinnovation.cigarrostock.repository.WarehouseRepository;
+import one.digitalinnovation.cigarrostock.repository.WarehouseStockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WarehouseServiceTest {
+
+    private static final long CIGARRO_ID = 1L;
+    private static final long DEPOT_ID = 1L;
+    private static final long STORE_ID = 2L;
+
+    @Mock
+    private WarehouseRepository warehouseRepository;
+
+    @Mock
+    private WarehouseStockRepository warehouseStockRepository;
+
+    @Mock
+    private CigarroRepository cigarroRepository;
+
+    @Mock
+    private WarehouseStockTotals warehouseStockTotals;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WarehouseService warehouseService;
+
+    @BeforeEach
+    void setUp() {
+        warehouseService = new WarehouseService(warehouseRepository, warehouseStockRepository, cigarroRepository,
+                warehouseStockTotals, eventPublisher, transactionManager);
+    }
+
+    @Test
+    void whenWarehouseCodeIsAlreadyRegisteredThenAnExceptionShouldBeThrown() {
+        // given
+        WarehouseDTO warehouseDTO = new WarehouseDTO(null, "DEPOT", "Central depot");
+
+        // when
+        when(warehouseRepository.saveAndFlush(new Warehouse(null, "DEPOT", "Central depot"))).thenThrow(DataIntegrityViolationException.class);
+
+        // then
+        assertThrows(WarehouseAlreadyRegisteredException.class, () -> warehouseService.createWarehouse(warehouseDTO));
+    }
+
+    @Test
+    void whenFirstIncrementAtAWarehouseIsCalledThenTheStockRowIsCreatedAndIncremented() throws Exception {
+        // when
+        when(warehouseStockRepository.existsByCigarroIdAndWarehouseId(CIGARRO_ID, STORE_ID)).thenReturn(false);
+        when(warehouseRepository.existsById(STORE_ID)).thenReturn(true);
+        when(cigarroRepository.existsById(CIGARRO_ID)).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, STORE_ID, 10)).thenReturn(1);
+        when(warehouseStockRepository.findByCigarroIdAndWarehouseId(CIGARRO_ID, STORE_ID))
+                .thenReturn(Optional.of(new WarehouseStock(1L, CIGARRO_ID, STORE_ID, 10)));
+
+        // then
+        WarehouseStockDTO incrementedStock = warehouseService.increment(STORE_ID, CIGARRO_ID, 10);
+
+        assertThat(incrementedStock, is(equalTo(new WarehouseStockDTO(CIGARRO_ID, STORE_ID, 10))));
+        verify(warehouseStockRepository).saveAndFlush(new WarehouseStock(null, CIGARRO_ID, STORE_ID, 0));
+        ArgumentCaptor<WarehouseStockChangedEvent> event = ArgumentCaptor.forClass(WarehouseStockChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenIncrementExceedsMaxAtAWarehouseThenAnExceptionShouldBeThrown() {
+        // when
+        when(warehouseStockRepository.existsByCigarroIdAndWarehouseId(CIGARRO_ID, STORE_ID)).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, STORE_ID, 80)).thenReturn(0);
+
+        // then
+        assertThrows(CigarroStockExceededException.class, () -> warehouseService.increment(STORE_ID, CIGARRO_ID, 80));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void whenMovementTargetsAnUnknownWarehouseThenAnExceptionShouldBeThrown() {
+        // when
+        when(warehouseStockRepository.existsByCigarroIdAndWarehouseId(CIGARRO_ID, STORE_ID)).thenReturn(false);
+        when(warehouseRepository.existsById(STORE_ID)).thenReturn(false);
+
+        // then
+        assertThrows(WarehouseNotFoundException.class, () -> warehouseService.decrement(STORE_ID, CIGARRO_ID, 5));
+    }
+
+    @Test
+    void whenTransferIsCalledThenRowsAreUpdatedInWarehouseIdOrder() throws Exception {
+        // given
+        StockTransferDTO transfer = new StockTransferDTO(CIGARRO_ID, STORE_ID, DEPOT_ID, 5);
+
+        // when
+        when(warehouseStockRepository.existsByCigarroIdAndWarehouseId(any(), any())).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, DEPOT_ID, 5)).thenReturn(1);
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, STORE_ID, -5)).thenReturn(1);
+        when(warehouseStockRepository.findByCigarroIdAndWarehouseId(CIGARRO_ID, STORE_ID))
+                .thenReturn(Optional.of(new WarehouseStock(2L, CIGARRO_ID, STORE_ID, 15)));
+        when(warehouseStockRepository.findByCigarroIdAndWarehouseId(CIGARRO_ID, DEPOT_ID))
+                .thenReturn(Optional.of(new WarehouseStock(1L, CIGARRO_ID, DEPOT_ID, 5)));
+
+        // then
+        List<WarehouseStockDTO> stocks = warehouseService.transfer(transfer);
+
+        assertThat(stocks, is(equalTo(Arrays.asList(new WarehouseStockDTO(CIGARRO_ID, STORE_ID, 15), new WarehouseStockDTO(CIGARRO_ID, DEPOT_ID, 5)))));
+        InOrder updates = inOrder(warehouseStockRepository);
+        updates.verify(warehouseStockRepository).addQuantity(CIGARRO_ID, DEPOT_ID, 5);
+        updates.verify(warehouseStockRepository).addQuantity(CIGARRO_ID, STORE_ID, -5);
+        verify(eventPublisher, times(2)).publishEvent(any(WarehouseStockChangedEvent.class));
+    }
+
+    @Test
+    void whenTransferSourceHasNotEnoughStockThenTheTransferIsRolledBack() {
+        // given
+        StockTransferDTO transfer = new StockTransferDTO(CIGARRO_ID, STORE_ID, DEPOT_ID, 5);
+        SimpleTransactionStatus transaction = new SimpleTransactionStatus();
+
+        // when
+        when(warehouseStockRepository.existsByCigarroIdAndWarehouseId(any(), any())).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(transaction);
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, DEPOT_ID, 5)).thenReturn(1);
+        when(warehouseStockRepository.addQuantity(CIGARRO_ID, STORE_ID, -5)).thenReturn(0);
+
+        // then
+        assertThrows(CigarroStockInsufficientException.class, () -> warehouseService.transfer(transfer));
+        assertTrue(transaction.isRollbackOnly());
+        verify(eventPublisher).publishEvent(any(WarehouseStockChangedEvent.class));
+    }
+
+    @Test
+    void whenLocationsAreRequestedThenTotalComesFromTheMaintainedTotals() throws Exception {
+        // when
+        when(cigarroRepository.existsById(CIGARRO_ID)).thenReturn(true);
+        when(warehouseStockRepository.findByCigarroIdOrderByWarehouseId(CIGARRO_ID))
+                .thenReturn(Collections.singletonList(new WarehouseStock(1L, CIGARRO_ID, DEPOT_ID, 7)));
+        when(warehouseStockTotals.total(CIGARRO_ID)).thenReturn(7L);
+
+        // then
+        CigarroLocationsDTO locations = warehouseService.findLocations(CIGARRO_ID);
+
+        assertThat(locations, is(equalTo(new CigarroLocationsDTO(CIGARRO_ID, 7L,
+                Collections.singletonList(new WarehouseStockDTO(CIGARRO_ID, DEPOT_ID, 7))))));
+    }
+}
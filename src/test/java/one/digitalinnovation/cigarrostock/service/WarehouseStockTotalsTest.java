@@ -0,0 +1,62 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.event.CigarroDeletedEvent;
+import one.digitalinnovation.cigarrostock.event.WarehouseStockChangedEvent;
+import one.digitalinnovation.cigarrostock.repository.WarehouseStockRepository;
+import one.digitalinnovation.cigarrostock.repository.WarehouseStockRepository.Total;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WarehouseStockTotalsTest {
+
+    private static final long CIGARRO_ID = 1L;
+
+    @Mock
+    private WarehouseStockRepository warehouseStockRepository;
+
+    @InjectMocks
+    private WarehouseStockTotals warehouseStockTotals;
+
+    @Test
+    void whenMovementsCommitThenTotalIsUpdatedFromTheStartupSum() {
+        // given
+        Total total = mock(Total.class);
+
+        // when
+        when(total.getCigarroId()).thenReturn(CIGARRO_ID);
+        when(total.getQuantity()).thenReturn(30L);
+        when(warehouseStockRepository.sumQuantityByCigarro()).thenReturn(Collections.singletonList(total));
+
+        // then
+        warehouseStockTotals.afterSingletonsInstantiated();
+        warehouseStockTotals.onStockChanged(new WarehouseStockChangedEvent(this, CIGARRO_ID, 1L, 10));
+        warehouseStockTotals.onStockChanged(new WarehouseStockChangedEvent(this, CIGARRO_ID, 2L, -4));
+
+        assertThat(warehouseStockTotals.total(CIGARRO_ID), is(equalTo(36L)));
+        assertThat(warehouseStockTotals.total(2L), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenCigarroIsDeletedThenItsTotalIsDropped() {
+        // given
+        warehouseStockTotals.onStockChanged(new WarehouseStockChangedEvent(this, CIGARRO_ID, 1L, 10));
+
+        // when
+        warehouseStockTotals.onDeleted(new CigarroDeletedEvent(this, CIGARRO_ID, "Brahma"));
+
+        // then
+        assertThat(warehouseStockTotals.total(CIGARRO_ID), is(equalTo(0L)));
+    }
+}
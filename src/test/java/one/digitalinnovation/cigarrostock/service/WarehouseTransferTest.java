@@ -0,0 +1,95 @@
+package one.digitalinnovation.cigarrostock.service;
+
+import one.digitalinnovation.cigarrostock.dto.StockTransferDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseDTO;
+import one.digitalinnovation.cigarrostock.dto.WarehouseStockDTO;
+import one.digitalinnovation.cigarrostock.entity.Cigarro;
+import one.digitalinnovation.cigarrostock.enums.CigarroType;
+import one.digitalinnovation.cigarrostock.exception.CigarroStockInsufficientException;
+import one.digitalinnovation.cigarrostock.repository.CigarroRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest
+public class WarehouseTransferTest {
+
+    private static final int THREADS = 8;
+    private static final int STOCK = 100;
+
+    @Autowired
+    private WarehouseService warehouseService;
+
+    @Autowired
+    private CigarroService cigarroService;
+
+    @Autowired
+    private CigarroRepository cigarroRepository;
+
+    private Long cigarroId;
+    private Long depotId;
+    private Long storeId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Cigarro cigarro = new Cigarro(null, "Warehouse transfers", "Souza Cruz", 2 * STOCK, 0, CigarroType.VIRGINIA, null, null);
+        cigarroId = cigarroRepository.save(cigarro).getId();
+        depotId = warehouseService.createWarehouse(new WarehouseDTO(null, "DEPOT-" + cigarroId, "Depot")).getId();
+        storeId = warehouseService.createWarehouse(new WarehouseDTO(null, "STORE-" + cigarroId, "Store")).getId();
+        warehouseService.increment(depotId, cigarroId, STOCK);
+        warehouseService.increment(storeId, cigarroId, STOCK);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cigarroService.deleteById(cigarroId);
+    }
+
+    @Test
+    void whenOppositeTransfersRunConcurrentlyThenTotalIsPreserved() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            StockTransferDTO transfer = i % 2 == 0
+                    ? new StockTransferDTO(cigarroId, depotId, storeId, 3)
+                    : new StockTransferDTO(cigarroId, storeId, depotId, 3);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 25; j++) {
+                    try {
+                        warehouseService.transfer(transfer);
+                    } catch (CigarroStockInsufficientException e) {
+                        // the source warehouse ran out for a moment
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<WarehouseStockDTO> locations = warehouseService.findLocations(cigarroId).getLocations();
+        int summedQuantity = locations.stream().mapToInt(WarehouseStockDTO::getQuantity).sum();
+        assertThat(summedQuantity, is(equalTo(2 * STOCK)));
+        assertThat(warehouseService.findLocations(cigarroId).getTotal(), is(equalTo((long) 2 * STOCK)));
+    }
+}